@@ -0,0 +1,161 @@
+package index.HPVL_tree_index;
+
+import index.PVL_tree_index.PVLTree;
+import utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Decides how LevelTrees fold a new sorted run (two filed vc epochs) into its PVL levels.
+Levels are ordered newest first and never modified, a merge returns a new list that reuses untouched trees.
+binary     the original cascade, level i empty or one run of 2^i runs; the same as tiered(2)
+tiered     up to sizeRatio - 1 runs per tier, the sizeRatio-th merges the tier into one run of the next tier;
+           cheap ingest, more levels to query
+leveled    one tree per level, level i holds at most base * sizeRatio^(i + 1) keys, every run is merged into
+           level 0 and a full level is pushed down whole; few levels, every key rewritten on each level
+sizeRatio  the run absorbs the newest level while that level has at most ratio times its keys, 1 behaves
+           like binary, larger ratios merge more eagerly
+Write amplification is keys written into level trees over keys ingested, since the policy was created.
+ */
+public abstract class CompactionPolicy {
+    long ingested;
+    long written;
+    int levelCount;
+
+    public static CompactionPolicy binary() {
+        return tiered(2);
+    }
+
+    public static CompactionPolicy tiered(int sizeRatio) {
+        return new Tiered(sizeRatio);
+    }
+
+    public static CompactionPolicy leveled(int sizeRatio) {
+        return new Leveled(sizeRatio);
+    }
+
+    public static CompactionPolicy sizeRatio(double ratio) {
+        return new SizeRatio(ratio);
+    }
+
+    //levels after run is added, levels itself is left as is
+    public List<PVLTree> merge(List<PVLTree> levels, long[] run) {
+        ingested += run.length;
+        List<PVLTree> next = fold(new ArrayList<>(levels), run);
+        int count = 0;
+        for (PVLTree level : next)
+            if (level != null) count++;
+        levelCount = count;
+        return next;
+    }
+
+    abstract List<PVLTree> fold(List<PVLTree> levels, long[] run);
+
+    public double getWriteAmplification() {
+        return ingested == 0 ? 0 : (double) written / ingested;
+    }
+
+    //non empty levels after the last merge, the PVL trees a query visits
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    PVLTree build(long[] keys, int level) {
+        written += keys.length;
+        return new PVLTree(keys, VersionTrees.levelErr(level));
+    }
+
+    static class Tiered extends CompactionPolicy {
+        final int sizeRatio;
+
+        Tiered(int sizeRatio) {
+            if (sizeRatio < 2)
+                throw new IllegalArgumentException("tiered size ratio must be at least 2");
+            this.sizeRatio = sizeRatio;
+        }
+
+        // tier t owns slots [t * (sizeRatio - 1), (t + 1) * (sizeRatio - 1))
+        @Override
+        List<PVLTree> fold(List<PVLTree> levels, long[] run) {
+            int width = sizeRatio - 1;
+            for (int tier = 0; ; ++tier) {
+                int from = tier * width;
+                for (int i = from; i < from + width; ++i) {
+                    if (i == levels.size())
+                        levels.add(null);
+                    if (levels.get(i) == null) {
+                        levels.set(i, build(run, tier));
+                        return levels;
+                    }
+                }
+                for (int i = from; i < from + width; ++i) {
+                    run = Utils.sortMerge(run, levels.get(i).keys());
+                    levels.set(i, null);
+                }
+            }
+        }
+    }
+
+    static class Leveled extends CompactionPolicy {
+        final int sizeRatio;
+        long base;
+
+        Leveled(int sizeRatio) {
+            if (sizeRatio < 2)
+                throw new IllegalArgumentException("leveled size ratio must be at least 2");
+            this.sizeRatio = sizeRatio;
+        }
+
+        @Override
+        List<PVLTree> fold(List<PVLTree> levels, long[] run) {
+            if (base == 0)
+                base = run.length;
+            long capacity = base;
+            for (int level = 0; ; ++level) {
+                capacity *= sizeRatio;
+                if (level == levels.size()) {
+                    levels.add(build(run, level));
+                    return levels;
+                }
+                if (levels.get(level) != null)
+                    run = Utils.sortMerge(run, levels.get(level).keys());
+                if (run.length <= capacity) {
+                    levels.set(level, build(run, level));
+                    return levels;
+                }
+                levels.set(level, null);
+            }
+        }
+    }
+
+    static class SizeRatio extends CompactionPolicy {
+        final double ratio;
+        long base;
+
+        SizeRatio(double ratio) {
+            // below 1 equal runs never merge and every run stays a level of its own
+            if (ratio < 1)
+                throw new IllegalArgumentException("size ratio must be at least 1");
+            this.ratio = ratio;
+        }
+
+        @Override
+        List<PVLTree> fold(List<PVLTree> levels, long[] run) {
+            if (base == 0)
+                base = run.length;
+            levels.removeIf(level -> level == null);
+            while (!levels.isEmpty()) {
+                long[] keys = levels.get(0).keys();
+                if (keys.length > ratio * run.length)
+                    break;
+                levels.remove(0);
+                run = Utils.sortMerge(run, keys);
+            }
+
+            // err as binary would pick for a tree of this many runs
+            levels.add(0, build(run, 63 - Long.numberOfLeadingZeros(Math.max(1, run.length / base))));
+            return levels;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package index.HPVL_tree_index;
+
+import index.PVLB_tree_index.PVLB_Res;
+import index.PVL_tree_index.PVLLookup_Res;
+
+/*
+Membership proof of one key in one HPVLIndex version, slots as in Res: PVLB trees (vc tree, level buffer,
+pending merge) and PVL levels, both checked against the root digest of that version.
+found: only the slot that holds the key is answered, by a one key PVLB range or a PVL lookup proof.
+absent: every slot is answered, with fence pruning on a PVL level whose fences exclude the key by the fences alone.
+
+ */
+public class Contains_Res {
+    public final long key;
+    boolean found;
+    PVLB_Res[] PVLB_res;
+    PVLLookup_Res[] PVL_res;
+    boolean[] fenced;
+
+    Contains_Res(long key, int pvlbCount, int pvlCount) {
+        this.key = key;
+        PVLB_res = new PVLB_Res[pvlbCount];
+        PVL_res = new PVLLookup_Res[pvlCount];
+        fenced = new boolean[pvlCount];
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public PVLB_Res[] getPVLBResults() {
+        return PVLB_res;
+    }
+
+    public PVLLookup_Res[] getPVLResults() {
+        return PVL_res;
+    }
+
+    public boolean isFenced(int i) {
+        return fenced != null && i < fenced.length && fenced[i];
+    }
+
+    public long getVOSize() {
+        return ResCodec.encodedSize(this);
+    }
+}
@@ -3,12 +3,21 @@ package index.HPVL_tree_index;
 import index.PVLB_tree_index.PVLBTree;
 import index.PVLB_tree_index.PVLB_Res;
 import index.PVL_tree_index.PVLTree;
+import index.client.RootDigest;
+import index.client.Verifier;
 // import jdk.nashorn.internal.ir.debug.ObjectSizeCalculator; // Java 9+ 不可用
-import utils.IOTools;
+import utils.Footprint;
+import utils.KeyFile;
+import utils.RetentionPolicy;
 import utils.Utils;
+import utils.VersionHistory;
 
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class HPVLIndex {
@@ -16,63 +25,166 @@ public class HPVLIndex {
     public static String sk1;
     int chainLen;
     VCChain vcChain;
-    LevelTrees state0 = new LevelTrees();
-    LevelTrees state1 = new LevelTrees();
+    // what readers see: the version and the trees of every version still served, replaced whole on every publish
+    final AtomicReference<HPVLSnapshot> snapshot;
+    // writer side: the level state serving the vc epoch in progress, versions before it keep theirs in the ring
+    LevelTrees state;
+    private volatile CompactionPolicy policy;
+    // background compaction: executor (null = merge on the insert thread), the merge in flight and its result;
+    // a merged state is only served from the next filing on, versions already published keep their trees
+    ExecutorService compactor;
+    Future<LevelTrees> compaction;
+    LevelTrees merged;
 
     int currentVersion;
+    // versions that left the vc chain and are kept by the retention policy, with their level trees
+    final VersionHistory<VersionTrees> history = new VersionHistory<>();
+    private final long[] publishedAt;
 
     public HPVLIndex(int chainLen) {
         this.chainLen = chainLen;
         vcChain = new VCChain(chainLen);
+        publishedAt = new long[chainLen];
         currentVersion = 0; // currentVersion = 1 is first version
+        state = new LevelTrees();
+        policy = state.policy;
+        snapshot = new AtomicReference<>(HPVLSnapshot.empty(chainLen));
+    }
+
+    //how filed vc trees are merged into the levels, binary by default; only before the first insert
+    public void setCompactionPolicy(CompactionPolicy policy) {
+        if (currentVersion != 0)
+            throw new IllegalStateException("compaction policy must be set on an empty index");
+        state = new LevelTrees(policy);
+        this.policy = policy;
+    }
+
+    public CompactionPolicy getCompactionPolicy() {
+        return policy;
+    }
+
+    //the latest published state, pin it to run several reads against one version
+    public HPVLSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    public int getCurrentVersion() {
+        return snapshot().currentVersion;
+    }
+
+    //null keeps only the vc chain, as before
+    public void setRetention(RetentionPolicy policy) {
+        history.setPolicy(policy, currentVersion);
+        HPVLSnapshot s = snapshot();
+        snapshot.set(new HPVLSnapshot(s.currentVersion, s.ringSize, s.ring, history.view()));
+    }
+
+    public int getCheckpointCount() {
+        return history.size();
+    }
+
+    //run LevelTrees merges on executor, null merges inline on the inserting thread as before
+    public void setCompactor(ExecutorService executor) {
+        awaitCompaction();
+        compactor = executor;
+    }
+
+    //block until the merge in flight, if any, is done; the next filing builds on its result.
+    //interrupted, the merge stays in flight; failed, it is dropped and the next filing merges inline
+    public void awaitCompaction() {
+        if (compaction == null)
+            return;
+        try {
+            merged = compaction.get();
+            compaction = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            compaction = null;
+            throw new IllegalStateException("level trees compaction failed", e.getCause());
+        }
+    }
+
+    //the levels the next epoch builds on: the merge result, or state with its pending tree merged here
+    //when the merge failed or the wait for it was interrupted, so a filed tree is never lost
+    private LevelTrees compactedState() {
+        try {
+            awaitCompaction();
+        } catch (IllegalStateException e) {
+            // redone inline below
+        }
+        if (compaction != null) {
+            compaction.cancel(false);
+            compaction = null;
+        }
+        LevelTrees base = merged;
+        merged = null;
+        if (base == null) {
+            base = new LevelTrees(state);
+            if (state.pending != null)
+                base.insert(state.pending);
+        }
+        return base;
     }
 
     public void insert(long key) {
+        if (history.getPolicy() != null && (vcChain.rear + 2) % vcChain.que.length == vcChain.front) {
+            // the oldest version leaves the vc chain with this insert
+            int oldest = currentVersion - vcChain.size() + 1;
+            history.offer(oldest, publishedAt[Math.floorMod(oldest, chainLen)], snapshot().ringVersionTrees(oldest), currentVersion + 1);
+        }
         PVLBTree PVLBTree = vcChain.file();
         //need state update
         if (PVLBTree != null) {
-            state0 = new LevelTrees(state1);
-            state1.insert(PVLBTree);
+            LevelTrees base = compactedState();
+            state = new LevelTrees(base);
+            if (compactor != null) {
+                // for the whole epoch the state serves the filed tree as a pending tree next to the levels
+                state.pending = PVLBTree;
+                // the merge result is picked up by the next filing, never published under a version already out
+                LevelTrees next = new LevelTrees(base);
+                compaction = compactor.submit(() -> {
+                    next.insert(PVLBTree);
+                    return next;
+                });
+            } else {
+                state.insert(PVLBTree);
+            }
         }
         vcChain.insert(key);
         currentVersion++;
+        publishedAt[currentVersion % chainLen] = System.currentTimeMillis();
+        publish();
     }
 
-    public Res rangeQuery(long low, long high, int version) {
-        PVLB_Res[] PVLB_res = new PVLB_Res[2];
-        // vcChain query
-
-        PVLB_res[0] = vcChain.rangeQuery(low, high, version, currentVersion);
-
-        Res res = new Res(PVLB_res, null);
+    //captures the trees of the new version; older versions keep the ones captured when they were published
+    private void publish() {
+        VersionTrees versionTrees = state.versionTrees(vcChain.que[Math.floorMod(vcChain.rear - 1, chainLen)]);
+        HPVLSnapshot s = snapshot();
+        snapshot.set(new HPVLSnapshot(currentVersion, vcChain.size(), s.ring.with(currentVersion, versionTrees), history.view()));
+    }
 
-        //ALTrees query
-        if (currentVersion - version > vcChain.front) {
-            state0.rangeQuery(low, high, res);
-        } else {
-            state1.rangeQuery(low, high, res);
-        }
-        return res;
+    public Res rangeQuery(long low, long high, int version) {
+        return snapshot().rangeQuery(low, high, version);
     }
 
     public VersionTrees getVersionTrees(int version) {
-        VersionTrees versionTrees = new VersionTrees();
-        versionTrees.PVLBTree = new PVLBTree[2];
-        versionTrees.PVLBTree[0] = vcChain.getVersionTree(version, currentVersion);
-
-        LevelTrees state;
-        if (currentVersion - version > vcChain.front) {
-            state = state0;
-        } else {
-            state = state1;
-        }
-        versionTrees.PVLBTree[1] = state.PVLBTree;
-        versionTrees.PVLTrees = state.PVLTrees.toArray(new PVLTree[state.PVLTrees.size()]);
-        return versionTrees;
+        return snapshot().getVersionTrees(version);
     }
 
+    //is key in version, null when the version is gone
+    public Contains_Res contains(long key, int version) {
+        return snapshot().contains(key, version);
+    }
+
+    public RootDigest getRootDigest(int version) {
+        return snapshot().getRootDigest(version);
+    }
 
     public boolean verify(VersionTrees versionTrees, long low, long high, Res res) {
+        // a result taken from another state than the trees, e.g. across a compaction publish
+        if (res.PVLB_res.length != versionTrees.PVLBTree.length || res.PVL_res.length != versionTrees.PVLTrees.length)
+            return false;
         //vcChain verify
         for (int i = 0; i < versionTrees.PVLBTree.length; ++i) {
             if (res.PVLB_res[i] != null) {
@@ -83,7 +195,10 @@ public class HPVLIndex {
 
         //ALTrees verify
         for (int i = 0; i < versionTrees.PVLTrees.length; ++i) {
-            if (res.PVL_res[i] != null) {
+            if (res.isFenced(i)) {
+                if (versionTrees.PVLTrees[i] == null || !VersionTrees.outside(versionTrees.PVLTrees[i], low, high))
+                    return false;
+            } else if (res.PVL_res[i] != null) {
                 if ( !versionTrees.PVLTrees[i].verify(low, high, res.PVL_res[i]) )
                     return false;
             }
@@ -92,30 +207,39 @@ public class HPVLIndex {
         return true;
     }
 
+    public boolean verify(VersionTrees versionTrees, long key, Contains_Res res) {
+        return Verifier.verify(versionTrees.getRootDigest(), key, res);
+    }
+
+    //the served versions, the level state in progress and a merge not yet picked up, shared trees and nodes counted once
+    public Footprint footprint() {
+        Footprint fp = new Footprint();
+        HPVLSnapshot s = snapshot();
+        for (int age = 0; age < s.ringSize; ++age)
+            footprint(s.ringVersionTrees(s.currentVersion - age), fp);
+        for (VersionTrees versionTrees : s.checkpoints.values())
+            footprint(versionTrees, fp);
+        for (LevelTrees levels : new LevelTrees[]{state, merged}) {
+            if (levels == null) continue;
+            footprint(levels.versionTrees(null), fp);
+        }
+        return fp;
+    }
+
+    private static void footprint(VersionTrees versionTrees, Footprint fp) {
+        for (PVLBTree PVLBTree : versionTrees.PVLBTree)
+            if (PVLBTree != null) PVLBTree.footprint(fp);
+        for (PVLTree PVLTree : versionTrees.PVLTrees)
+            if (PVLTree != null) PVLTree.footprint(fp);
+    }
+
     public void getIndexSize() {
-        System.setProperty("java.vm.name", "Java HotSpot(TM) ");
-        // long sz = 0;
-        // HashSet<PVLTree> st = new HashSet<>();
-        // for (PVLTree PVLTree : state0.PVLTrees) {
-        //     if (!st.contains(PVLTree)) {
-        //         st.add(PVLTree);
-        //         sz += ObjectSizeCalculator.getObjectSize(PVLTree);
-        //     }
-        // }
-        // for (PVLTree PVLTree : state1.PVLTrees) {
-        //     if (!st.contains(PVLTree)) {
-        //         st.add(PVLTree);
-        //         sz += ObjectSizeCalculator.getObjectSize(PVLTree);
-        //     }
-        // }
-        // sz += ObjectSizeCalculator.getObjectSize(vcChain);
-        // System.out.println("ALBTree size:" + sz / 1024.0 / 1024.0 + "mb");
-        System.out.println("ALBTree size: (需要 Java 8)");
+        System.out.println("ALBTree size:" + footprint());
     }
 
 
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
 
         long s,e;
@@ -127,9 +251,12 @@ public class HPVLIndex {
 
         long low = 10, high = 1000000000L;
 
-        long[] dataset = IOTools.readData("D:\\paper_source\\work_4\\dataset\\Longitudes_100M", len);
+        long[] dataset;
+        try (KeyFile keyFile = KeyFile.open("D:\\paper_source\\work_4\\dataset\\Longitudes_100M.keys")) {
+            dataset = keyFile.readKeys(len);
+            low = keyFile.min; high = keyFile.max;
+        }
         double[] queryRange = new double[]{0.0001, 0.001, 0.005, 0.01, 0.015, 0.02};
-        low = IOTools.low; high = IOTools.high;
 
         Arrays.sort(dataset);
 
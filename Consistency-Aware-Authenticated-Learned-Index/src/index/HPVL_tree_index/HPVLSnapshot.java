@@ -0,0 +1,60 @@
+package index.HPVL_tree_index;
+
+import index.client.RootDigest;
+import utils.Checkpoints;
+
+/*
+Immutable view of an HPVLIndex as of one published version: the version number, the VersionTrees of every
+version still in the vc chain and the checkpoints the retention policy kept. The writer publishes a new one
+after every insert, so a reader that pins one gets a query and the VersionTrees to verify it from the same
+state, without locking. Nothing here refers back to the live index: the trees of a version are captured when
+it is published and the ring and checkpoint map are copies the writer never touches again.
+ */
+public class HPVLSnapshot {
+    final int currentVersion;
+    // versions (currentVersion - ringSize, currentVersion] are in the ring
+    final int ringSize;
+    final VersionRing ring;
+    final Checkpoints<VersionTrees> checkpoints;
+
+    HPVLSnapshot(int currentVersion, int ringSize, VersionRing ring, Checkpoints<VersionTrees> checkpoints) {
+        this.currentVersion = currentVersion;
+        this.ringSize = ringSize;
+        this.ring = ring;
+        this.checkpoints = checkpoints;
+    }
+
+    static HPVLSnapshot empty(int chainLen) {
+        return new HPVLSnapshot(0, 0, new VersionRing(chainLen), Checkpoints.empty());
+    }
+
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    VersionTrees ringVersionTrees(int version) {
+        int age = currentVersion - version;
+        return age < 0 || age >= ringSize ? null : ring.get(version);
+    }
+
+    //null when the version is neither in the vc chain nor kept by the retention policy
+    public VersionTrees getVersionTrees(int version) {
+        VersionTrees versionTrees = ringVersionTrees(version);
+        return versionTrees != null ? versionTrees : checkpoints.get(version);
+    }
+
+    public Res rangeQuery(long low, long high, int version) {
+        VersionTrees versionTrees = getVersionTrees(version);
+        return versionTrees == null ? null : versionTrees.rangeQuery(low, high);
+    }
+
+    public Contains_Res contains(long key, int version) {
+        VersionTrees versionTrees = getVersionTrees(version);
+        return versionTrees == null ? null : versionTrees.contains(key);
+    }
+
+    public RootDigest getRootDigest(int version) {
+        VersionTrees versionTrees = getVersionTrees(version);
+        return versionTrees == null ? null : versionTrees.getRootDigest();
+    }
+}
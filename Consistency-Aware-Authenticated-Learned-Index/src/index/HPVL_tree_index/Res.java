@@ -1,25 +1,31 @@
 package index.HPVL_tree_index;
 
 import index.PVLB_tree_index.PVLB_Res;
-import index.PVL_tree_index.PVLTree;
 import index.PVL_tree_index.PVL_Res;
 
-import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-
-import static utils.IOTools.getFileSize;
-
 public class Res {
     PVLB_Res[] PVLB_res;
     PVL_Res[] PVL_res;
+    // PVL levels answered by their fences alone, null when none was
+    boolean[] fenced;
 
     public Res(PVLB_Res[] PVLB_res, PVL_Res[] PVL_res) {
         this.PVLB_res = PVLB_res;
         this.PVL_res = PVL_res;
     }
 
+    public PVLB_Res[] getPVLBResults() {
+        return PVLB_res;
+    }
+
+    public PVL_Res[] getPVLResults() {
+        return PVL_res;
+    }
+
+    //level i lies outside the query range, proven by the fences in the root digest, PVL_res[i] is null
+    public boolean isFenced(int i) {
+        return fenced != null && i < fenced.length && fenced[i];
+    }
 
     public long getVOSize() {
         long fileSize = 0;
@@ -29,6 +35,7 @@ public class Res {
             fileSize += res.getVOSize();
         }
 
+        if (PVL_res == null) return fileSize;
         for (PVL_Res res : PVL_res) {
             if (res == null) continue;
             fileSize += res.getVOSize();
@@ -0,0 +1,134 @@
+package index.HPVL_tree_index;
+
+import index.PVLB_tree_index.PVLBVOCodec;
+import index.PVLB_tree_index.PVLB_Res;
+import index.PVL_tree_index.PVLLookup_Res;
+import index.PVL_tree_index.PVLVOCodec;
+import index.PVL_tree_index.PVL_Res;
+import utils.VOStream;
+
+/*
+Binary VO codec for Res.
+PVLB_res and PVL_res are written as (length + 1, 0 for a null array), then per entry
+a presence byte and the PVLBVOCodec / PVLVOCodec encoding of the entry. A PVL level answered by its fences
+has presence byte 2 and nothing else.
+Contains_Res: key(zigzag) found(byte), PVLB_res as above, then PVL count(varint) and per level a presence
+byte (0 empty, 1 lookup proof, 2 fenced) and the PVLVOCodec lookup encoding.
+ */
+public class ResCodec {
+
+    public static byte[] encode(Res res) {
+        VOStream.Writer w = new VOStream.Writer((int) Math.min(encodedSize(res), Integer.MAX_VALUE));
+        if (res.PVLB_res == null) {
+            w.writeVarInt(0);
+        } else {
+            w.writeVarInt(res.PVLB_res.length + 1);
+            for (PVLB_Res r : res.PVLB_res) {
+                w.writeByte(r == null ? 0 : 1);
+                if (r != null) PVLBVOCodec.write(r, w);
+            }
+        }
+        if (res.PVL_res == null) {
+            w.writeVarInt(0);
+        } else {
+            w.writeVarInt(res.PVL_res.length + 1);
+            for (int i = 0; i < res.PVL_res.length; ++i) {
+                PVL_Res r = res.PVL_res[i];
+                w.writeByte(res.isFenced(i) ? 2 : r == null ? 0 : 1);
+                if (r != null && !res.isFenced(i)) PVLVOCodec.write(r, w);
+            }
+        }
+        return w.toByteArray();
+    }
+
+    public static Res decode(byte[] bytes) {
+        VOStream.Reader r = new VOStream.Reader(bytes);
+        PVLB_Res[] PVLB_res = null;
+        int len = r.readVarInt32();
+        if (len > 0) {
+            PVLB_res = new PVLB_Res[r.checkCount(len - 1)];
+            for (int i = 0; i < PVLB_res.length; ++i)
+                if (r.readByte() != 0) PVLB_res[i] = PVLBVOCodec.read(r);
+        }
+        PVL_Res[] PVL_res = null;
+        boolean[] fenced = null;
+        len = r.readVarInt32();
+        if (len > 0) {
+            PVL_res = new PVL_Res[r.checkCount(len - 1)];
+            for (int i = 0; i < PVL_res.length; ++i) {
+                int present = r.readByte();
+                if (present == 1) {
+                    PVL_res[i] = PVLVOCodec.read(r);
+                } else if (present == 2) {
+                    if (fenced == null) fenced = new boolean[PVL_res.length];
+                    fenced[i] = true;
+                }
+            }
+        }
+        Res res = new Res(PVLB_res, PVL_res);
+        res.fenced = fenced;
+        return res;
+    }
+
+    public static byte[] encode(Contains_Res res) {
+        VOStream.Writer w = new VOStream.Writer((int) Math.min(encodedSize(res), Integer.MAX_VALUE));
+        w.writeSignedVarInt(res.key);
+        w.writeByte(res.found ? 1 : 0);
+        w.writeVarInt(res.PVLB_res.length);
+        for (PVLB_Res r : res.PVLB_res) {
+            w.writeByte(r == null ? 0 : 1);
+            if (r != null) PVLBVOCodec.write(r, w);
+        }
+        w.writeVarInt(res.PVL_res.length);
+        for (int i = 0; i < res.PVL_res.length; ++i) {
+            PVLLookup_Res r = res.PVL_res[i];
+            w.writeByte(res.isFenced(i) ? 2 : r == null ? 0 : 1);
+            if (r != null && !res.isFenced(i)) PVLVOCodec.write(r, w);
+        }
+        return w.toByteArray();
+    }
+
+    public static Contains_Res decodeContains(byte[] bytes) {
+        VOStream.Reader r = new VOStream.Reader(bytes);
+        long key = r.readSignedVarInt();
+        boolean found = r.readByte() != 0;
+        PVLB_Res[] PVLB_res = new PVLB_Res[r.readCount()];
+        for (int i = 0; i < PVLB_res.length; ++i)
+            if (r.readByte() != 0) PVLB_res[i] = PVLBVOCodec.read(r);
+        int pvlCount = r.readCount();
+        Contains_Res res = new Contains_Res(key, PVLB_res.length, pvlCount);
+        res.found = found;
+        res.PVLB_res = PVLB_res;
+        for (int i = 0; i < pvlCount; ++i) {
+            int present = r.readByte();
+            if (present == 1) res.PVL_res[i] = PVLVOCodec.readLookup(r);
+            else if (present == 2) res.fenced[i] = true;
+        }
+        return res;
+    }
+
+    public static long encodedSize(Contains_Res res) {
+        long sz = VOStream.signedVarIntSize(res.key) + 1 + VOStream.varIntSize(res.PVLB_res.length) + res.PVLB_res.length
+                + VOStream.varIntSize(res.PVL_res.length) + res.PVL_res.length;
+        for (PVLB_Res r : res.PVLB_res)
+            if (r != null) sz += PVLBVOCodec.encodedSize(r);
+        for (int i = 0; i < res.PVL_res.length; ++i)
+            if (res.PVL_res[i] != null && !res.isFenced(i)) sz += PVLVOCodec.encodedSize(res.PVL_res[i]);
+        return sz;
+    }
+
+    public static long encodedSize(Res res) {
+        long sz = 2;
+        if (res.PVLB_res != null) {
+            sz += VOStream.varIntSize(res.PVLB_res.length + 1) - 1 + res.PVLB_res.length;
+            for (PVLB_Res r : res.PVLB_res)
+                if (r != null) sz += PVLBVOCodec.encodedSize(r);
+        }
+        if (res.PVL_res != null) {
+            sz += VOStream.varIntSize(res.PVL_res.length + 1) - 1 + res.PVL_res.length;
+            for (int i = 0; i < res.PVL_res.length; ++i)
+                if (res.PVL_res[i] != null && !res.isFenced(i)) sz += PVLVOCodec.encodedSize(res.PVL_res[i]);
+        }
+        return sz;
+    }
+}
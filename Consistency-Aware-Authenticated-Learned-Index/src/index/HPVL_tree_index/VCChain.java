@@ -12,9 +12,10 @@ public class VCChain {
         front = rear = 0;
     }
 
+    //the epoch that just filled the ring, filed before the next one starts a new tree
     public PVLBTree file() {
-        if (rear == que.length - 1)
-            return que[rear];
+        if (rear == 0)
+            return que[que.length - 1];
         return null;
     }
 
@@ -25,6 +26,10 @@ public class VCChain {
         return (rear + 1) % que.length == front;
     }
 
+    public int size() {
+        return (rear - front + que.length) % que.length;
+    }
+
     public void insert(long key) {
         //need build new tree while queue is null or the tree is biggest
         if (rear == 0)
@@ -45,7 +50,7 @@ public class VCChain {
     }
 
     public PVLBTree getVersionTree(int version, int currentVersion) {
-        return que[(rear - currentVersion + version + que.length) % que.length];
+        return que[Math.floorMod(rear - 1 - currentVersion + version, que.length)];
     }
 
     public PVLB_Res rangeQuery(long low, long high, int version, int currentVersion) {
@@ -0,0 +1,37 @@
+package index.HPVL_tree_index;
+
+/*
+The VersionTrees of the versions in the vc chain, slot version mod capacity, copy on write.
+with() copies the block index and the one block it writes, so each published snapshot keeps a ring that
+never changes while the writer moves on and reuses the slot.
+ */
+final class VersionRing {
+    static final int BLOCK = 64;
+    final int capacity;
+    final VersionTrees[][] blocks;
+
+    VersionRing(int capacity) {
+        this(capacity, new VersionTrees[(capacity + BLOCK - 1) / BLOCK][]);
+    }
+
+    private VersionRing(int capacity, VersionTrees[][] blocks) {
+        this.capacity = capacity;
+        this.blocks = blocks;
+    }
+
+    VersionRing with(int version, VersionTrees versionTrees) {
+        int slot = Math.floorMod(version, capacity);
+        VersionTrees[][] next = blocks.clone();
+        VersionTrees[] block = next[slot / BLOCK];
+        block = block == null ? new VersionTrees[BLOCK] : block.clone();
+        block[slot % BLOCK] = versionTrees;
+        next[slot / BLOCK] = block;
+        return new VersionRing(capacity, next);
+    }
+
+    VersionTrees get(int version) {
+        int slot = Math.floorMod(version, capacity);
+        VersionTrees[] block = blocks[slot / BLOCK];
+        return block == null ? null : block[slot % BLOCK];
+    }
+}
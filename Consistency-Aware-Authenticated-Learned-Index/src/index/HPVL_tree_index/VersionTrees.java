@@ -1,10 +1,133 @@
 package index.HPVL_tree_index;
 
 import index.PVLB_tree_index.PVLBTree;
+import index.PVLB_tree_index.PVLB_Res;
+import index.client.RootDigest;
+import index.PVL_tree_index.PVLLookup_Res;
 import index.PVL_tree_index.PVLTree;
+import index.PVL_tree_index.PVL_Res;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class VersionTrees {
-    static int[] errList = new int[]{16, 16, 16, 16, 16, 16, 64, 64, 64, 64, 64, 64, 64, 64, 64, 128, 128, 128, 128, 128, 128, 128, 128, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64};
+    // process wide knobs, change them through the setters below only while no queries or merges are running
+    private static volatile int[] errList = new int[]{16, 16, 16, 16, 16, 16, 64, 64, 64, 64, 64, 64, 64, 64, 64, 128, 128, 128, 128, 128, 128, 128, 128, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64};
+    // level fan-out: worker pool (null = every tree on the caller thread, one after another)
+    private static volatile ForkJoinPool queryPool;
+    // PVL levels whose [minKey, maxKey] misses the query are skipped, the digest fences prove them empty
+    private static volatile boolean fencePruning = true;
     PVLBTree[] PVLBTree;
     PVLTree[] PVLTrees;
+
+    //err of the PVL tree built for level i, e.g. from PreTrain.recommendLevelErrs; the last one serves deeper levels
+    public static void setLevelErrs(int[] errs) {
+        errList = errs.clone();
+    }
+
+    static int levelErr(int level) {
+        int[] errs = errList;
+        return errs[Math.min(level, errs.length - 1)];
+    }
+
+    //the pool replaced here is shut down under any query still fanning out on it
+    public static synchronized void setQueryParallelism(int parallelism) {
+        if (queryPool != null)
+            queryPool.shutdown();
+        queryPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    public static void setFencePruning(boolean fencePruning) {
+        VersionTrees.fencePruning = fencePruning;
+    }
+
+    //the same result HPVLIndex.rangeQuery gives for this version
+    public Res rangeQuery(long low, long high) {
+        Res res = new Res(new PVLB_Res[PVLBTree.length], new PVL_Res[PVLTrees.length]);
+        if (fencePruning)
+            res.fenced = new boolean[PVLTrees.length];
+        int trees = PVLBTree.length + PVLTrees.length;
+        ForkJoinPool pool = queryPool;
+        if (pool == null) {
+            for (int i = 0; i < trees; ++i)
+                query(low, high, i, res);
+        } else {
+            // each tree writes its own slot, so res comes out in level order whatever finishes first
+            pool.submit(() -> IntStream.range(0, trees).parallel().forEach(i -> query(low, high, i, res))).join();
+        }
+        return res;
+    }
+
+    //tree i: the PVLB trees first, then the PVL levels
+    private void query(long low, long high, int i, Res res) {
+        if (i < PVLBTree.length) {
+            if (PVLBTree[i] != null)
+                res.PVLB_res[i] = PVLBTree[i].rangeQuery(low, high);
+        } else if (PVLTrees[i - PVLBTree.length] != null) {
+            int l = i - PVLBTree.length;
+            if (res.fenced != null && outside(PVLTrees[l], low, high))
+                res.fenced[l] = true;
+            else
+                res.PVL_res[l] = PVLTrees[l].rangeQuery(low, high);
+        }
+    }
+
+    //membership of key: slots newest first (vc tree, pending merge, level buffer, PVL levels from the smallest),
+    //the first one holding key ends the probe and is the whole proof; levels are fenced as in rangeQuery
+    public Contains_Res contains(long key) {
+        Contains_Res res = new Contains_Res(key, PVLBTree.length, PVLTrees.length);
+        boolean fenced = fencePruning;
+        for (int i : new int[]{0, 2, 1}) {
+            if (i >= PVLBTree.length || PVLBTree[i] == null)
+                continue;
+            PVLB_Res r = PVLBTree[i].rangeQuery(key, key);
+            if (r.getResults().contains(key)) {
+                res = new Contains_Res(key, PVLBTree.length, PVLTrees.length);
+                res.found = true;
+                res.PVLB_res[i] = r;
+                return res;
+            }
+            res.PVLB_res[i] = r;
+        }
+        for (int i = 0; i < PVLTrees.length; ++i) {
+            if (PVLTrees[i] == null)
+                continue;
+            if (fenced && outside(PVLTrees[i], key, key)) {
+                res.fenced[i] = true;
+                continue;
+            }
+            PVLLookup_Res r = PVLTrees[i].lookup(key);
+            if (r.isFound()) {
+                res = new Contains_Res(key, PVLBTree.length, PVLTrees.length);
+                res.found = true;
+                res.PVL_res[i] = r;
+                return res;
+            }
+            res.PVL_res[i] = r;
+        }
+        return res;
+    }
+
+    static boolean outside(PVLTree tree, long low, long high) {
+        return high < tree.minKey() || low > tree.maxKey();
+    }
+
+    //the digests a client keeps for this version instead of the trees
+    public RootDigest getRootDigest() {
+        byte[][] pvlbRoots = new byte[PVLBTree.length][];
+        for (int i = 0; i < PVLBTree.length; ++i) {
+            if (PVLBTree[i] != null)
+                pvlbRoots[i] = PVLBTree[i].rootDigest();
+        }
+        byte[][] pvlRoots = new byte[PVLTrees.length][];
+        long[] pvlFences = new long[2 * PVLTrees.length];
+        for (int i = 0; i < PVLTrees.length; ++i) {
+            if (PVLTrees[i] != null) {
+                pvlRoots[i] = PVLTrees[i].rootDigest();
+                pvlFences[2 * i] = PVLTrees[i].minKey();
+                pvlFences[2 * i + 1] = PVLTrees[i].maxKey();
+            }
+        }
+        return new RootDigest(pvlbRoots, pvlRoots, pvlFences);
+    }
 }
@@ -4,7 +4,8 @@ import index.PVL_tree_index.PVLLeafNode;
 import index.learned_node_info.Model;
 import index.learned_node_info.OptPLA;
 import index.learned_node_info.Segment;
-import utils.SHA;
+import utils.DigestEngine;
+import utils.Footprint;
 
 import java.io.Serializable;
 import java.math.BigInteger;
@@ -17,12 +18,12 @@ import static index.HPVL_tree_index.HPVLIndex.*;
 public class ConnectNode implements Serializable {
     public PVLLeafNode modelNode;
     public MBNode buf;
-    public String hash;
+    public byte[] hash;
     public BigInteger r;
     int bufSize;
 
     public ConnectNode() {}
-    public ConnectNode(String hash) {
+    public ConnectNode(byte[] hash) {
         this.hash = hash;
     }
     public ConnectNode(PVLLeafNode modelNode) {
@@ -46,11 +47,26 @@ public class ConnectNode implements Serializable {
         computeAndSetNodeHash();
     }
 
+    public void footprint(Footprint fp) {
+        if (!fp.visit(this)) return;
+        fp.add(Footprint.NODES, Footprint.object(4, 4));
+        if (hash != null) fp.addBytes(Footprint.HASHES, hash);
+        // copies of a connect node share the model node and its r
+        if (!fp.visited(modelNode)) fp.addBigInteger(Footprint.CHD_RES, r);
+        if (modelNode != null) modelNode.footprint(fp);
+        if (buf != null) buf.footprint(fp);
+    }
+
     public void computeAndSetNodeHash() {
         int sz = modelNode.voInfo == null ? modelNode.keys.length : modelNode.voInfo.n;
-        String str = SHA.HASHDataToString(r.toString() + sz);
-        if (buf != null) str += buf.hash;
-        hash = SHA.HASHDataToString(str);
+        hash = nodeHash(r, sz, buf == null ? null : buf.hash);
+    }
+
+    //hash of a connect node with model r over n keys, bufHash null when it has no buffer
+    static byte[] nodeHash(BigInteger r, int n, byte[] bufHash) {
+        byte[] modelHash = new byte[DigestEngine.LEN];
+        DigestEngine.hashChild(DigestEngine.prefix(null), r, n, modelHash);
+        return DigestEngine.hashConcat(bufHash == null ? new byte[][]{modelHash} : new byte[][]{modelHash, bufHash});
     }
 
     public void buildVCForModel() {
@@ -122,7 +138,7 @@ public class ConnectNode implements Serializable {
         } else {
             ConnectNode updatedNode;
             if (buf == null) {
-                MBNode bufNode = new MBNode(new long[]{k}, new MBNode[]{new MBNode(SHA.HASHDataToString(String.valueOf(k)))});
+                MBNode bufNode = new MBNode(new long[]{k}, new MBNode[]{new MBNode(MBNode.hashKey(k))});
                 bufNode.computeAndSetNodeHash();
 
                 updatedNode = new ConnectNode(this, bufNode, bufSize + 1);
@@ -1,6 +1,7 @@
 package index.PVLB_tree_index;
 
-import utils.SHA;
+import utils.DigestEngine;
+import utils.Footprint;
 import utils.Utils;
 
 import java.io.Serializable;
@@ -13,33 +14,56 @@ import static index.PVLB_tree_index.PVLBTree.N;
 public class MBNode implements Serializable {
     public long[] keys;
     public MBNode[] childes;
-    public String hash;
+    public byte[] hash;
     ConnectNode[] connectNodes;
 
     public int size() {
         return keys.length;
     }
+
+    public void footprint(Footprint fp) {
+        if (!fp.visit(this)) return;
+        fp.add(Footprint.NODES, Footprint.object(4, 0));
+        if (keys != null) fp.addLongs(Footprint.KEYS, keys);
+        if (hash != null) fp.addBytes(Footprint.HASHES, hash);
+        if (childes != null && fp.visit(childes)) {
+            fp.add(Footprint.NODES, Footprint.array(childes.length, 4));
+            for (MBNode chd : childes)
+                if (chd != null) chd.footprint(fp);
+        }
+        if (connectNodes != null && fp.visit(connectNodes)) {
+            fp.add(Footprint.NODES, Footprint.array(connectNodes.length, 4));
+            for (ConnectNode connectNode : connectNodes)
+                if (connectNode != null) connectNode.footprint(fp);
+        }
+    }
     public boolean isLeafNode() {
         return childes != null && keys != null && childes.length == keys.length;
     }
 
 
     public void computeAndSetNodeHash() {
-        StringBuilder builder = new StringBuilder();
+        byte[][] chdHashes;
         if (connectNodes != null) {
-            for (ConnectNode chd : connectNodes) {
-                builder.append(chd.hash);
-            }
+            chdHashes = new byte[connectNodes.length][];
+            for (int i = 0; i < connectNodes.length; ++i)
+                chdHashes[i] = connectNodes[i].hash;
         } else {
-            for (MBNode chd : childes)
-                builder.append(chd.hash);
+            chdHashes = new byte[childes.length][];
+            for (int i = 0; i < childes.length; ++i)
+                chdHashes[i] = childes[i].hash;
         }
-        this.hash = SHA.HASHDataToString(builder.toString());
+        this.hash = DigestEngine.hashConcat(chdHashes);
+    }
+
+    //hash of a buffer key
+    public static byte[] hashKey(long key) {
+        return DigestEngine.hashKey(DigestEngine.prefix(null), key);
     }
 
     public MBNode() {
     }
-    public MBNode(String hash) {this.hash = hash;}
+    public MBNode(byte[] hash) {this.hash = hash;}
     public MBNode(MBNode node) {
         this.childes = Arrays.copyOf(node.childes, node.childes.length);
         this.keys = Arrays.copyOf(node.keys, node.keys.length);
@@ -101,7 +125,7 @@ public class MBNode implements Serializable {
         }
 
         newKeys[pos] = addKey;
-        keyHashNode[pos] = new MBNode(SHA.HASHDataToString(String.valueOf(addKey)));
+        keyHashNode[pos] = new MBNode(hashKey(addKey));
 
         return new UpdNodeInfo(new MBNode(newKeys, keyHashNode), false);
     }
@@ -168,7 +192,7 @@ public class MBNode implements Serializable {
 
     //split for buffer MB LeafNode(split MB Node)
     public UpdNodeInfo splitNode(int pos, long addKey) {
-        String addHash = SHA.HASHDataToString(String.valueOf(addKey));
+        byte[] addHash = hashKey(addKey);
         int len1 = (keys.length + 1) / 2;
         int len2 = keys.length + 1 - len1;
         long[] newKeys1 = new long[len1];
@@ -3,10 +3,11 @@ package index.PVLB_tree_index;
 import index.PVL_tree_index.PVLLeafNode;
 import index.PVL_tree_index.VoInfo;
 // import jdk.nashorn.internal.ir.debug.ObjectSizeCalculator; // Java 9+ 不可用
-import utils.IOTools;
-import utils.SHA;
-import utils.Utils;
+import utils.DigestEngine;
+import utils.Footprint;
+import utils.KeyFile;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -48,126 +49,183 @@ public class PVLBTree {
         return keysList;
     }
 
-    private class ResInfo {
-        boolean hasLeafBound = false;
-        boolean hasRightBound = false;
+    // per-call verify state: the result cursor over the keys the VO consumes, nothing is written into the VO
+    private static class VerifyCursor {
+        final long low, high;
+        final List<Long> res;
+        int resTag = 0;
+
+        VerifyCursor(long low, long high, List<Long> res) {
+            this.low = low;
+            this.high = high;
+            this.res = res;
+        }
+    }
+
+    // revealed items in key order (connect nodes of the tree, or keys of one buffer), hidden subtrees may only
+    // sit left or right of the run; a hidden left part needs a revealed key <= low, a hidden right part one >= high
+    private static class Run {
+        boolean started, hiddenLeft, hiddenRight;
+        long firstMin, lastMax;
+
+        void hidden() {
+            if (started) hiddenRight = true;
+            else hiddenLeft = true;
+        }
+
+        boolean revealed(long min, long max) {
+            if (hiddenRight || started && min < lastMax)
+                return false;
+            if (!started) firstMin = min;
+            started = true;
+            lastMax = max;
+            return true;
+        }
+
+        boolean complete(long low, long high) {
+            return started && (!hiddenLeft || firstMin <= low) && (!hiddenRight || lastMax >= high);
+        }
+    }
+
+    private static boolean isHash(MBNode node) {
+        return node.childes == null && node.connectNodes == null;
     }
-    private int resTag = 0;
-    private boolean verifyModelNode(long low, long high, BigInteger r, PVLLeafNode modelNode, List<Long> res) {
-        VoInfo voInfo = modelNode.voInfo;
+
+    //checks the model results res[from, to), sorted, bounded and matching the pies
+    private static boolean verifyModelNode(VerifyCursor cur, BigInteger r, VoInfo voInfo, int from, int to) {
         int i = voInfo.startPos;
+        if (i < 0 || voInfo.endPos < i || voInfo.endPos >= voInfo.n || voInfo.voPies.size() != (i == 0 ? 1 : 2))
+            return false;
+        for (int t = from + 1; t < to; ++t)
+            if (cur.res.get(t) < cur.res.get(t - 1))
+
+                return false;
 
         //has not left bound
-        if (i != 0 && res.get(resTag) > low)
+        if (i != 0 && cur.res.get(from) > cur.low)
             return false;
 
+        DigestEngine.Prefix p0 = DigestEngine.prefix(sk0);
+        DigestEngine.Prefix pr = DigestEngine.prefix(sk1).with(r);
         byte[] bStart, bEnd;
+        byte[] h = new byte[DigestEngine.LEN];
 
         if (i == 0) {
-            bStart = new byte[32];
-            bEnd = Utils.encPosHash(sk1, r, modelNode.voInfo.voPies.get(0), modelNode.voInfo.endPos);
+            bStart = new byte[DigestEngine.LEN];
+            bEnd = DigestEngine.encPos(pr, voInfo.voPies.get(0), voInfo.endPos);
         } else {
-            bStart = Utils.encPosHash(sk1, r, modelNode.voInfo.voPies.get(0), i - 1);
-            bEnd = Utils.encPosHash(sk1, r, modelNode.voInfo.voPies.get(1), modelNode.voInfo.endPos);
+            bStart = DigestEngine.encPos(pr, voInfo.voPies.get(0), i - 1);
+            bEnd = DigestEngine.encPos(pr, voInfo.voPies.get(1), voInfo.endPos);
         }
 
-        for (; i <= modelNode.voInfo.endPos; ++i) {
-            bStart = SHA.bytesXor(bStart, SHA.hashToBytes(sk0 + res.get(resTag++)));
+        for (int t = from; t < to; ++t) {
+            DigestEngine.hashKey(p0, cur.res.get(t), h);
+            DigestEngine.xorInto(bStart, h);
         }
 
         if (!Arrays.equals(bStart, bEnd))
             return false;
 
         // has not right bound
-        if (i != voInfo.n && res.get(resTag - 1) < high)
-            return false;
-
-        return true;
+        return voInfo.endPos == voInfo.n - 1 || cur.res.get(to - 1) >= cur.high;
     }
 
-    private void verifyConnectNode(long low, long high, ConnectNode conNode, List<Long> res, boolean isFirstKey, boolean isLastKey, ResInfo resInfo) {
-        //verify model result
-        boolean isPass = verifyModelNode(low, high, conNode.r, conNode.modelNode, res);
-        if (!isPass)
-            return;
-
-        // whether all tree has left bound
-        if (res.get(0) <= low || isFirstKey) {
-            resInfo.hasLeafBound = true;
-        }
-
-        // whether all tree has right bound
-        if (res.get(resTag - 1) >= high) {
-            resInfo.hasRightBound = true;
-        }
+    //hash of a revealed connect node, its model and buffer results must be complete for [low, high]
+    private static byte[] verifyConnectNode(ConnectNode conNode, VerifyCursor cur, Run run) {
+        VoInfo voInfo = conNode.modelNode.voInfo;
+        if (conNode.r == null || voInfo == null)
+            return null;
 
-        //verify buffer result
+        //verify model result
+        int from = cur.resTag, to = from + voInfo.endPos - voInfo.startPos + 1;
+        if (to <= from || to > cur.res.size() || !verifyModelNode(cur, conNode.r, voInfo, from, to))
+            return null;
+        cur.resTag = to;
+        long min = cur.res.get(from), max = cur.res.get(to - 1);
+
+        //verify buffer result, a buffer on the query path is never hidden
+        byte[] bufHash = null;
         if (conNode.buf != null) {
-            if (conNode.buf.hash == null) {
-                ResInfo bufSubInfo = new ResInfo();
-                travelMBTree(low, high, conNode.buf, res, true, true, bufSubInfo);
-
-                // buffer has not left or right bound
-                if (!bufSubInfo.hasLeafBound || !bufSubInfo.hasRightBound)
-                    return;
-
-                // the model node must have isLastKey, otherwise hasRightBound is true
-                if (res.get(resTag - 1) >= high || isLastKey) {
-                    resInfo.hasRightBound = true;
-                }
-            }
-        } else {
-            if (isLastKey)
-                resInfo.hasRightBound = true;
+            if (isHash(conNode.buf))
+                return null;
+            Run bufRun = new Run();
+            bufHash = travelMBTree(conNode.buf, cur, bufRun, false);
+            if (bufHash == null || !bufRun.complete(cur.low, cur.high))
+                return null;
+            min = Math.min(min, bufRun.firstMin);
+            max = Math.max(max, bufRun.lastMax);
         }
 
-        conNode.computeAndSetNodeHash();
+        if (!run.revealed(min, max))
+            return null;
+        return ConnectNode.nodeHash(conNode.r, voInfo.n, bufHash);
     }
 
-    private void travelMBTree(long low, long high, MBNode node, List<Long> res, boolean isFirstKey, boolean isLastKey, ResInfo resInfo) {
-        if (node.hash != null)
-            return;
+    //hash of a VO subtree, top: the tree of connect nodes, otherwise a buffer tree whose null slots are result keys
+    private static byte[] travelMBTree(MBNode node, VerifyCursor cur, Run run, boolean top) {
+        if (isHash(node)) {
+            run.hidden();
+            return node.hash;
+        }
 
+        byte[][] chdHashes;
         if (node.connectNodes != null) {
-
+            if (!top)
+                return null;
+            chdHashes = new byte[node.connectNodes.length][];
             for (int i = 0; i < node.connectNodes.length; ++i) {
-                if (node.connectNodes[i].hash == null) {
-                    verifyConnectNode(low, high, node.connectNodes[i], res, isFirstKey && i == 0, isLastKey && i == node.connectNodes.length - 1, resInfo);
-                }
+                ConnectNode conNode = node.connectNodes[i];
+                if (conNode == null)
+                    return null;
+                if (conNode.modelNode == null) {
+                    run.hidden();
+                    chdHashes[i] = conNode.hash;
+                } else
+                    chdHashes[i] = verifyConnectNode(conNode, cur, run);
+                if (chdHashes[i] == null)
+                    return null;
             }
-
         } else {
-
+            chdHashes = new byte[node.childes.length][];
             for (int i = 0; i < node.childes.length; ++i) {
                 // leaf node, compute hash
                 if (node.childes[i] == null) {
-                    //determine whether it is a left and right boundary
-                    if (isFirstKey && i == 0 || res.get(resTag) <= low)
-                        resInfo.hasLeafBound = true;
-                    if (isLastKey && i == node.childes.length - 1 || res.get(resTag) >= high)
-                        resInfo.hasRightBound = true;
-
-                    node.childes[i] = new MBNode(SHA.HASHDataToString(res.get(resTag++).toString()));
+                    if (top || cur.resTag == cur.res.size())
+                        return null;
+                    long key = cur.res.get(cur.resTag++);
+                    if (!run.revealed(key, key))
+                        return null;
+                    chdHashes[i] = MBNode.hashKey(key);
                 } else
-                    travelMBTree(low, high, node.childes[i], res, isFirstKey && i == 0, isLastKey && i == node.childes.length - 1, resInfo);
+                    chdHashes[i] = travelMBTree(node.childes[i], cur, run, top);
+                if (chdHashes[i] == null)
+                    return null;
             }
         }
-
-        node.computeAndSetNodeHash();
+        return chdHashes.length == 0 ? null : DigestEngine.hashConcat(chdHashes);
     }
 
 
-    public boolean verify(long low, long high, PVLB_Res PVLB_res) {
-        resTag = 0;
-        ResInfo info = new ResInfo();
+    //root digest of this version, all a client needs to verify a PVLB_Res
+    public byte[] rootDigest() {
+        return root == null ? null : root.hash.clone();
+    }
 
-        travelMBTree(low, high, PVLB_res.node, PVLB_res.res, true, true, info);
+    public boolean verify(long low, long high, PVLB_Res PVLB_res) {
+        return verify(root.hash, low, high, PVLB_res);
+    }
 
-        // has not left or right bound
-//        if (!info.hasLeafBound || !info.hasRightBound)
-//            return false;
+    //verify against a root digest only, no tree needed
+    public static boolean verify(byte[] rootHash, long low, long high, PVLB_Res PVLB_res) {
+        if (rootHash == null || PVLB_res == null || PVLB_res.node == null || PVLB_res.res == null)
+            return false;
+        VerifyCursor cur = new VerifyCursor(low, high, PVLB_res.res);
+        Run run = new Run();
+        byte[] hash = travelMBTree(PVLB_res.node, cur, run, true);
 
-        return root.hash.equals(PVLB_res.node.hash);
+        // every result is accounted for and the revealed connect nodes cover [low, high]
+        return hash != null && cur.resTag == PVLB_res.res.size() && run.complete(low, high)
+                && Arrays.equals(rootHash, hash);
     }
 
 
@@ -255,27 +313,13 @@ public class PVLBTree {
                 voNode.connectNodes[i] = rangeQueryInCon(low, high, node.connectNodes[i], resInfo);
 
             // has not right bound currently, continue find right bound
+            // the model gives its first key, the buffer its smallest one, a hidden buffer could not be checked
             if (i < node.connectNodes.length && resInfo.maxKey < high) {
-                // add model node
-                //just need find model node, the first key of node is right bound
-                PVLLeafNode subModelNode = node.connectNodes[i].modelNode;
-                VoInfo modelVoInfo = new VoInfo(subModelNode, 0);
-                resInfo.maxKey = Math.max(resInfo.maxKey, subModelNode.keys[0]);
-                resInfo.res.add(subModelNode.keys[0]);
-                modelVoInfo.add(subModelNode.pies[0]);
-
-                //add buffer node
-                MBNode buf = null;
-                if (node.connectNodes[i].buf != null) {
-                    buf = new MBNode(node.connectNodes[i].buf.hash);
-                }
-
-                //return connect node
-                voNode.connectNodes[i] = new ConnectNode(new PVLLeafNode(modelVoInfo), buf);
-                voNode.connectNodes[i].r = node.connectNodes[i].r;
+                voNode.connectNodes[i] = rangeQueryInCon(low, high, node.connectNodes[i], resInfo);
                 i++;
             }
 
+
             for (; i < n; ++i)
                 voNode.connectNodes[i] = new ConnectNode(node.connectNodes[i].hash);
 
@@ -344,15 +388,24 @@ public class PVLBTree {
         return updNodeInfo;
     }
 
+    public void footprint(Footprint fp) {
+        if (!fp.visit(this)) return;
+        fp.add(Footprint.NODES, Footprint.object(1, 0));
+        if (root != null) root.footprint(fp);
+    }
+
+    public Footprint footprint() {
+        Footprint fp = new Footprint();
+        footprint(fp);
+        return fp;
+    }
+
     public void getIndexSize() {
-        System.setProperty("java.vm.name", "Java HotSpot(TM) ");
-        // long piSize = ObjectSizeCalculator.getObjectSize(root);
-        // System.out.println("ALBTree size:" + piSize / 1024.0 / 1024.0 + "mb");
-        System.out.println("ALBTree size: (需要 Java 8)");
+        System.out.println("ALBTree size:" + footprint());
     }
 
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         long queryTime = 0, verifyTime = 0;
         long s,e;
@@ -365,7 +418,7 @@ public class PVLBTree {
 
         long low = 10, high = 1000000000L;
 
-        long[] dataset = IOTools.readData("D:\\paper_source\\work_4\\dataset\\Biased_100M", len);
+        long[] dataset = KeyFile.load("D:\\paper_source\\work_4\\dataset\\Biased_100M.keys", len);
 
 
         PVLBTree alBTree = new PVLBTree(err, n);
@@ -3,9 +3,11 @@ package index.PVLB_tree_index;
 import index.PVL_tree_index.PVLTree;
 import index.PVL_tree_index.PVL_Res;
 // import jdk.nashorn.internal.ir.debug.ObjectSizeCalculator; // Java 9+ 不可用
-import utils.IOTools;
+import utils.Footprint;
+import utils.KeyFile;
 import utils.Utils;
 
+import java.io.IOException;
 import java.util.Arrays;
 
 public class PVLBTreeChain {
@@ -58,15 +60,21 @@ public class PVLBTreeChain {
         return tree.verify(low, high, res);
     }
 
+    //every tree still held by the ring, nodes shared between versions counted once
+    public Footprint footprint() {
+        Footprint fp = new Footprint();
+        fp.add(Footprint.NODES, Footprint.array(chain.length, 4));
+        for (PVLBTree tree : chain)
+            if (tree != null) tree.footprint(fp);
+        return fp;
+    }
+
     public void getIndexSize() {
-        System.setProperty("java.vm.name", "Java HotSpot(TM) ");
-        // long sz = ObjectSizeCalculator.getObjectSize(chain);
-        // System.out.println("ALBTree size:" + sz / 1024.0 / 1024.0 + "mb");
-        System.out.println("ALBTree size: (需要 Java 8)");
+        System.out.println("ALBTree chain size:" + footprint());
     }
 
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         long s,e;
 
@@ -75,11 +83,17 @@ public class PVLBTreeChain {
 
 //        long[] dataset = Utils.buildRandArr(len, low, high, null);
 
-//        long[] dataset = IOTools.readData("D:\\paper_source\\work_4\\dataset\\Uniform_100M", len);
-        long[] dataset = IOTools.readData("D:\\paper_source\\work_4\\dataset\\Longitudes_100M", len);
+        // key files are converted from the text datasets with KeyFile <text dataset> <key file>
+        long[] dataset;
+        long low, high;
+//        try (KeyFile keyFile = KeyFile.open("D:\\paper_source\\work_4\\dataset\\Uniform_100M.keys")) {
+        try (KeyFile keyFile = KeyFile.open("D:\\paper_source\\work_4\\dataset\\Longitudes_100M.keys")) {
+            dataset = keyFile.readKeys(len);
+            low = keyFile.min; high = keyFile.max;
+        }
         double[] queryRange = new double[]{0.0001, 0.001, 0.005, 0.01, 0.015, 0.02};
         int err = 32;
-        long low = IOTools.low; long high = IOTools.high;
+
         int chainLen = 10000;
 
         PVLBTree.setParameter(64, err);
@@ -0,0 +1,140 @@
+package index.PVLB_tree_index;
+
+import index.PVL_tree_index.PVLLeafNode;
+import index.PVL_tree_index.PVLVOCodec;
+import utils.DigestEngine;
+import utils.VOStream;
+
+import java.math.BigInteger;
+
+/*
+Binary VO codec for PVLB_Res.
+MB node     : tag 0 hash(32 bytes) | tag 1 child count + children | tag 2 connect count + connect nodes | tag 3 result key slot
+connect node: tag 0 hash(32 bytes) | tag 1 r(32 bytes) + model VoInfo (PVLVOCodec) + buffer MB node
+PVLB_Res    : MB node, then result keys (count, zigzag deltas)
+ */
+public class PVLBVOCodec {
+    static final int HASH = 0, CHILDES = 1, CONNECT = 2, KEY = 3;
+
+    public static byte[] encode(PVLB_Res res) {
+        VOStream.Writer w = new VOStream.Writer((int) Math.min(encodedSize(res), Integer.MAX_VALUE));
+        write(res, w);
+        return w.toByteArray();
+    }
+
+    public static PVLB_Res decode(byte[] bytes) {
+        return read(new VOStream.Reader(bytes));
+    }
+
+    public static void write(PVLB_Res res, VOStream.Writer w) {
+        writeMB(res.node, w);
+        w.writeKeys(res.res);
+    }
+
+    public static PVLB_Res read(VOStream.Reader r) {
+        PVLB_Res res = new PVLB_Res();
+        res.node = readMB(r);
+        res.res = r.readKeys();
+        for (long k : res.res) res.maxKey = Math.max(res.maxKey, k);
+        return res;
+    }
+
+    public static void writeMB(MBNode node, VOStream.Writer w) {
+        if (node == null) {
+            w.writeByte(KEY);
+        } else if (node.childes != null) {
+            w.writeByte(CHILDES);
+            w.writeVarInt(node.childes.length);
+            for (MBNode chd : node.childes) writeMB(chd, w);
+        } else if (node.connectNodes != null) {
+            w.writeByte(CONNECT);
+            w.writeVarInt(node.connectNodes.length);
+            for (ConnectNode con : node.connectNodes) writeCon(con, w);
+        } else {
+            w.writeByte(HASH);
+            w.writeBytes(node.hash);
+        }
+    }
+
+    static void writeCon(ConnectNode con, VOStream.Writer w) {
+        if (con.modelNode != null) {
+            byte[] r = new byte[DigestEngine.LEN];
+            DigestEngine.toFixedBytes(con.r, r, 0);
+            w.writeByte(1);
+            w.writeBytes(r);
+            PVLVOCodec.writeVo(con.modelNode.voInfo, w);
+            writeMB(con.buf, w);
+        } else {
+            w.writeByte(0);
+            w.writeBytes(con.hash);
+        }
+    }
+
+    public static MBNode readMB(VOStream.Reader r) {
+        return readMB(r, 0);
+    }
+
+    static MBNode readMB(VOStream.Reader r, int depth) {
+        VOStream.checkDepth(depth);
+        int tag = r.readByte();
+        switch (tag) {
+            case KEY:
+                return null;
+            case CHILDES: {
+                MBNode node = new MBNode();
+                node.childes = new MBNode[r.readCount()];
+                for (int i = 0; i < node.childes.length; ++i) node.childes[i] = readMB(r, depth + 1);
+                return node;
+            }
+            case CONNECT: {
+                MBNode node = new MBNode();
+                node.connectNodes = new ConnectNode[r.readCount()];
+                for (int i = 0; i < node.connectNodes.length; ++i) node.connectNodes[i] = readCon(r, depth + 1);
+                return node;
+            }
+            case HASH:
+                return new MBNode(r.readBytes(DigestEngine.LEN));
+            default:
+                throw new IllegalArgumentException("unknown MB node tag " + tag);
+        }
+    }
+
+    static ConnectNode readCon(VOStream.Reader r, int depth) {
+        int tag = r.readByte();
+        if (tag == 0)
+            return new ConnectNode(r.readBytes(DigestEngine.LEN));
+        if (tag != 1)
+            throw new IllegalArgumentException("unknown connect node tag " + tag);
+        BigInteger conR = new BigInteger(1, r.readBytes(DigestEngine.LEN));
+        PVLLeafNode modelNode = new PVLLeafNode(PVLVOCodec.readVo(r, depth + 1));
+        ConnectNode con = new ConnectNode(modelNode, readMB(r, depth + 1));
+        con.r = conR;
+        return con;
+    }
+
+    //encoded size of the VO without the result keys, computed from the MB node without serializing it;
+    //walks the same nodes writeMB does, so it recurses as deep as the VO
+    public static long voSize(MBNode node) {
+        if (node == null)
+            return 1;
+        if (node.childes != null) {
+            long sz = 1 + VOStream.varIntSize(node.childes.length);
+            for (MBNode chd : node.childes) sz += voSize(chd);
+            return sz;
+        }
+        if (node.connectNodes != null) {
+            long sz = 1 + VOStream.varIntSize(node.connectNodes.length);
+            for (ConnectNode con : node.connectNodes) {
+                sz += 1 + DigestEngine.LEN;
+                if (con.modelNode != null)
+                    sz += PVLVOCodec.voSize(con.modelNode.voInfo) + voSize(con.buf);
+            }
+            return sz;
+        }
+        return 1 + DigestEngine.LEN;
+    }
+
+    public static long encodedSize(PVLB_Res res) {
+        return voSize(res.node) + VOStream.keysSize(res.res);
+    }
+}
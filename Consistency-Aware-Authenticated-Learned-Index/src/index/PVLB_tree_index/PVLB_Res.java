@@ -1,8 +1,5 @@
 package index.PVLB_tree_index;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,18 +23,11 @@ public class PVLB_Res {
     }
 
 
+    public List<Long> getResults() {
+        return res;
+    }
+
     public long getVOSize() {
-        long fileSize = 0;
-        try {
-            // 使用内存流计算大小,避免文件冲突
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteStream);
-            objectOutputStream.writeObject(node);
-            objectOutputStream.close();
-            fileSize = byteStream.size();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return fileSize;
+        return PVLBVOCodec.voSize(node);
     }
 }
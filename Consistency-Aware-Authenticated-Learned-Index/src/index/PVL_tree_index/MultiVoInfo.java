@@ -0,0 +1,37 @@
+package index.PVL_tree_index;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+VO node of a multi range query. A node may be reached by several intervals, so it keeps a sorted
+list of disjoint position runs instead of one [startPos, endPos]; every run carries its own pies
+(pie[start - 1] when start > 0, then pie[end]). Children of all runs are stored in position order.
+ */
+public class MultiVoInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public int n; //node keys size
+
+    public int[] runs; // startPos, endPos pairs
+    public List<byte[]> voPies;
+
+    public List<BigInteger> chdRes;
+    public List<MultiVoInfo> chdNode;
+
+    public MultiVoInfo(int n, int[] runs) {
+        this.n = n;
+        this.runs = runs;
+        voPies = new ArrayList<>(runs.length);
+    }
+
+    public boolean isLeafNode() {
+        return chdNode == null;
+    }
+
+    public int runCount() {
+        return runs.length / 2;
+    }
+}
@@ -0,0 +1,102 @@
+package index.PVL_tree_index;
+
+import utils.DigestEngine;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static index.HPVL_tree_index.HPVLIndex.sk0;
+import static index.HPVL_tree_index.HPVLIndex.sk1;
+
+/*
+Verifies many range results against one PVLTree version.
+VOs of the same version walk the same upper nodes, so the position hashes H(sk1 || r || pos) and the
+child entry hashes H(sk0 || r || n) they need are computed once and shared by the whole batch.
+The checks themselves still run for every VO; only hashes of public values are reused.
+ */
+public class PVLBatchVerifier {
+    final BigInteger rootR;
+    final int rootN;
+    final Cache cache = new Cache();
+
+    public PVLBatchVerifier(BigInteger rootR, int rootN) {
+        this.rootR = rootR;
+        this.rootN = rootN;
+    }
+
+    public PVLBatchVerifier(byte[] rootDigest) {
+        this(PVLTree.digestR(rootDigest), PVLTree.digestN(rootDigest));
+    }
+
+    public boolean verify(long low, long high, PVL_Res PVL_res) {
+        return PVLTree.verify(rootR, rootN, low, high, PVL_res, cache);
+    }
+
+    //verify res[i] for [low[i], high[i]], in parallel when a pool is given
+    public boolean[] verifyAll(long[] low, long[] high, PVL_Res[] res, ForkJoinPool pool) {
+        boolean[] isPass = new boolean[res.length];
+        if (pool == null) {
+            for (int i = 0; i < res.length; ++i)
+                isPass[i] = verify(low[i], high[i], res[i]);
+        } else {
+            pool.submit(() -> IntStream.range(0, res.length).parallel()
+                    .forEach(i -> isPass[i] = verify(low[i], high[i], res[i]))).join();
+        }
+        return isPass;
+    }
+
+    public void clear() {
+        cache.pads.clear();
+        cache.childHashes.clear();
+    }
+
+    static class Cache {
+        private static final byte[] ZERO = new byte[DigestEngine.LEN];
+
+        final ConcurrentHashMap<Key, byte[]> pads = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Key, byte[]> childHashes = new ConcurrentHashMap<>();
+
+        // pie ^ H(sk1 || r || pos)
+        byte[] encPos(BigInteger r, byte[] pie, int pos) {
+            byte[] pad = pads.computeIfAbsent(new Key(r, pos), k -> DigestEngine.encPos(DigestEngine.prefix(sk1).with(k.r), ZERO, k.v));
+            byte[] out = pie.clone();
+            DigestEngine.xorInto(out, pad);
+            return out;
+        }
+
+        // H(sk0 || r || n), callers must not modify the returned hash
+        byte[] childHash(BigInteger r, int n) {
+            return childHashes.computeIfAbsent(new Key(r, n), k -> {
+                byte[] h = new byte[DigestEngine.LEN];
+                DigestEngine.hashChild(DigestEngine.prefix(sk0), k.r, k.v, h);
+                return h;
+            });
+        }
+    }
+
+    static class Key {
+        final BigInteger r;
+        final int v;
+        final int hash;
+
+        Key(BigInteger r, int v) {
+            this.r = r;
+            this.v = v;
+            this.hash = r.hashCode() * 31 + v;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return v == k.v && r.equals(k.r);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -2,11 +2,9 @@ package index.PVL_tree_index;
 
 import index.learned_node_info.Segment;
 
-import utils.SHA;
-import utils.Utils;
+import utils.DigestEngine;
 
 import java.math.BigInteger;
-import java.util.Random;
 
 public class PVLLeafNode extends PVLNode {
 
@@ -18,13 +16,17 @@ public class PVLLeafNode extends PVLNode {
     }
 
     public BigInteger computeRAndSetPies(String sk0, String sk1) {
-        BigInteger r = new BigInteger(256, new Random());
+        BigInteger r = DigestEngine.nextNonce();
+        DigestEngine.Prefix p0 = DigestEngine.prefix(sk0);
+        DigestEngine.Prefix pr = DigestEngine.prefix(sk1).with(r);
         int n = keys.length;
-        byte[] hash = new byte[32];
+        byte[] hash = new byte[DigestEngine.LEN];
+        byte[] keyHash = new byte[DigestEngine.LEN];
         pies = new byte[n][];
         for (int i = 0; i < n; ++i) {
-            hash = SHA.bytesXor(hash, SHA.hashToBytes(sk0 + keys[i]));
-            pies[i] = Utils.encPosHash(sk1, r, hash, i);
+            DigestEngine.hashKey(p0, keys[i], keyHash);
+            DigestEngine.xorInto(hash, keyHash);
+            pies[i] = DigestEngine.encPos(pr, hash, i);
         }
         return r;
     }
@@ -0,0 +1,64 @@
+package index.PVL_tree_index;
+
+import java.math.BigInteger;
+
+/*
+Point lookup proof: at most two root-to-leaf paths of one position each.
+pred proves the largest key <= key (the key itself when found), succ the smallest key > key when key is absent.
+Per level a path holds the node size, the position, pie[pos - 1] (null at position 0), pie[pos] and the
+node's r (r[0] is the root, it comes from the root digest and is not sent).
+succ shares the levels above split with pred; at split it sits one position right of pred in the same node.
+ */
+public class PVLLookup_Res {
+    public final long key;
+    boolean found;
+    Path pred;
+    Path succ;
+    int split;
+
+    static class Path {
+        long key;
+        final int[] n;
+        final int[] pos;
+        final byte[][] leftPies;
+        final byte[][] rightPies;
+        final BigInteger[] r;
+
+        Path(int height) {
+            n = new int[height];
+            pos = new int[height];
+            leftPies = new byte[height][];
+            rightPies = new byte[height][];
+            r = new BigInteger[height];
+        }
+    }
+
+    PVLLookup_Res(long key) {
+        this.key = key;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public boolean hasPredecessor() {
+        return pred != null;
+    }
+
+    // the key itself when found
+    public long getPredecessor() {
+        return pred.key;
+    }
+
+    public boolean hasSuccessor() {
+        return succ != null;
+    }
+
+    public long getSuccessor() {
+        return succ.key;
+    }
+
+    public long getVOSize() {
+        return PVLVOCodec.encodedSize(this);
+    }
+}
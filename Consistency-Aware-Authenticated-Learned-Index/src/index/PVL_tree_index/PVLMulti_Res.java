@@ -0,0 +1,32 @@
+package index.PVL_tree_index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PVLMulti_Res {
+    MultiVoInfo node;
+    List<Long> res; // keys of all intervals in key order, each key once
+
+    public PVLMulti_Res(MultiVoInfo node, List<Long> res) {
+        this.node = node;
+        this.res = res;
+    }
+
+    public List<Long> getResults() {
+        return res;
+    }
+
+    //keys of one interval, bounds not included
+    public List<Long> getResults(long low, long high) {
+        List<Long> keys = new ArrayList<>();
+        for (long k : res) {
+            if (k >= low && k <= high)
+                keys.add(k);
+        }
+        return keys;
+    }
+
+    public long getVOSize() {
+        return PVLVOCodec.voSize(node);
+    }
+}
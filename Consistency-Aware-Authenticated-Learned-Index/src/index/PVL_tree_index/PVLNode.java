@@ -1,8 +1,9 @@
 package index.PVL_tree_index;
 
 import index.learned_node_info.Model;
+import index.learned_node_info.NodeSearch;
 import index.learned_node_info.Segment;
-import utils.Utils;
+import utils.Footprint;
 
 import java.io.Serializable;
 import java.math.BigInteger;
@@ -27,11 +28,27 @@ public class PVLNode implements Serializable {
     }
 
     public int findLeftBound(long tar, int err) {
-        int pos = model.find(tar);
-        if (pos - err >= keys.length) return keys.length - 1;
-        int l = Math.max(0, pos - err);
-        int r = Math.min(keys.length - 1, pos + err);
-        return Utils.findLeftBound(keys, tar, l, r);
+        return NodeSearch.findLeftBound(keys, tar, model.find(tar), err);
+    }
+
+    //this node and its subtree, children a snapshot has not materialised yet are not on the heap and not counted
+    public void footprint(Footprint fp) {
+        if (!fp.visit(this)) return;
+        fp.add(Footprint.NODES, Footprint.object(this instanceof PVLNonLeafNode ? 6 : 5, 0));
+        if (keys != null) fp.addLongs(Footprint.KEYS, keys);
+        if (pies != null) fp.addBytes(Footprint.PIES, pies);
+        if (fp.visit(model)) fp.add(Footprint.MODELS, Footprint.object(0, 16));
+        if (voInfo != null) voInfo.footprint(fp);
+        if (chd != null && fp.visit(chd)) {
+            fp.add(Footprint.NODES, Footprint.array(chd.length, 4));
+            for (PVLNode node : chd)
+                if (node != null) node.footprint(fp);
+        }
+    }
+
+    //i-th child, nodes loaded from a snapshot materialise it on first access
+    public PVLNode child(int i) {
+        return chd[i];
     }
 
     public BigInteger computeRAndSetPies(String sk0, String sk1) {
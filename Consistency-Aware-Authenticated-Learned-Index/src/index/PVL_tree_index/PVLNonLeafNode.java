@@ -1,11 +1,10 @@
 package index.PVL_tree_index;
 
 import index.learned_node_info.Segment;
-import utils.SHA;
-import utils.Utils;
+import utils.DigestEngine;
+import utils.Footprint;
 
 import java.math.BigInteger;
-import java.util.Random;
 
 
 public class PVLNonLeafNode extends PVLNode {
@@ -23,14 +22,30 @@ public class PVLNonLeafNode extends PVLNode {
         this.chdRes = new BigInteger[segment.segData.length];
     }
 
+    @Override
+    public void footprint(Footprint fp) {
+        if (chdRes != null && !fp.visited(this)) {
+            // chdRes[i] is child i's r, kept with the child by every version that reuses it: counted with the child
+            fp.add(Footprint.CHD_RES, Footprint.array(chdRes.length, 4));
+            for (int i = 0; i < chdRes.length; ++i)
+                if (chd == null || chd[i] == null || !fp.visited(chd[i]))
+                    fp.addBigInteger(Footprint.CHD_RES, chdRes[i]);
+        }
+        super.footprint(fp);
+    }
+
     public BigInteger computeRAndSetPies(String sk0, String sk1) {
-        BigInteger r = new BigInteger(256, new Random());
+        BigInteger r = DigestEngine.nextNonce();
+        DigestEngine.Prefix p0 = DigestEngine.prefix(sk0);
+        DigestEngine.Prefix pr = DigestEngine.prefix(sk1).with(r);
         int n = keys.length;
-        byte[] hash = new byte[32];
+        byte[] hash = new byte[DigestEngine.LEN];
+        byte[] chdHash = new byte[DigestEngine.LEN];
         pies = new byte[n][];
         for (int i = 0; i < n; ++i) {
-            hash = SHA.bytesXor(hash, SHA.hashToBytes(sk0 + chdRes[i] + chd[i].keys.length));
-            pies[i] = Utils.encPosHash(sk1, r, hash, i);
+            DigestEngine.hashChild(p0, chdRes[i], child(i).keys.length, chdHash);
+            DigestEngine.xorInto(hash, chdHash);
+            pies[i] = DigestEngine.encPos(pr, hash, i);
         }
         return r;
     }
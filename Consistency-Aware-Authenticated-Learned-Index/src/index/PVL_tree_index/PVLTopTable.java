@@ -0,0 +1,105 @@
+package index.PVL_tree_index;
+
+import utils.Footprint;
+import utils.Utils;
+
+/*
+Radix table over the keys of one non-leaf level (RadixSpline style), used to skip the model searches of the
+levels above it. keys holds every entry of that level in order, path[g * (level + 1) + l] the position at
+level l of the path to entry g, so one entry's path shares a cache line. table[p] is the first entry whose key prefix (key - min) >>> shift is >= p, so one lookup
+plus a search over the entries sharing the prefix gives the whole upper path.
+Only the server descent changes; the nodes on the path still go into the VO as before.
+ */
+class PVLTopTable {
+    final int level;
+    final long[] keys;
+    final int[] path;
+    final long min;
+    final int shift;
+    final int[] table;
+
+    private PVLTopTable(int level, long[] keys, int[] path, int radixBits) {
+        this.level = level;
+        this.keys = keys;
+        this.path = path;
+        this.min = keys[0];
+        long range = keys[keys.length - 1] - min;
+        int s = 0;
+        while ((range >>> s) >= (1L << radixBits)) s++;
+        this.shift = s;
+        this.table = new int[(int) (range >>> s) + 2];
+        int g = 0;
+        for (int p = 0; p < table.length; ++p) {
+            while (g < keys.length && ((keys[g] - min) >>> shift) < p) g++;
+            table[p] = g;
+        }
+    }
+
+    //table over the deepest non-leaf level with at most maxEntries entries, null when only the root fits
+    static PVLTopTable build(PVLNode root, int radixBits, int maxEntries) {
+        int level = -1;
+        int count = 0;
+        PVLNode[] nodes = new PVLNode[]{root};
+        for (int l = 0; nodes[0].chd != null; ++l) {
+            int c = 0;
+            for (PVLNode node : nodes) c += node.keys.length;
+            if (c > maxEntries) break;
+            level = l;
+            count = c;
+            PVLNode[] next = new PVLNode[c];
+            int k = 0;
+            for (PVLNode node : nodes)
+                for (int i = 0; i < node.keys.length; ++i) next[k++] = node.child(i);
+            nodes = next;
+        }
+        if (level <= 0)
+            return null;
+
+        long[] keys = new long[count];
+        int[] path = new int[(level + 1) * count];
+        collect(root, 0, level, new int[level + 1], keys, path, new int[1]);
+        return new PVLTopTable(level, keys, path, radixBits);
+    }
+
+    private static void collect(PVLNode node, int depth, int level, int[] stack, long[] keys, int[] path, int[] g) {
+        for (int i = 0; i < node.keys.length; ++i) {
+            stack[depth] = i;
+            if (depth == level) {
+                keys[g[0]] = node.keys[i];
+                System.arraycopy(stack, 0, path, g[0] * (level + 1), level + 1);
+                g[0]++;
+            } else {
+                collect(node.child(i), depth + 1, level, stack, keys, path, g);
+            }
+        }
+    }
+
+    //largest entry with key <= tar, -1 when tar is below every entry
+    int find(long tar) {
+        if (tar < min) return -1;
+        if (tar >= keys[keys.length - 1]) return keys.length - 1;
+        int p = (int) ((tar - min) >>> shift);
+        return Utils.findLeftBound(keys, tar, table[p], table[p + 1] - 1);
+    }
+
+    //positions at levels 0..level of the path a model descent for tar would take, non-leaf positions clamp to 0
+    int[] positions(long tar) {
+        int g = find(tar);
+        int[] pos = new int[level + 1];
+        if (g >= 0)
+            System.arraycopy(path, g * (level + 1), pos, 0, level + 1);
+        return pos;
+    }
+
+    void footprint(Footprint fp) {
+        if (!fp.visit(this)) return;
+        fp.add(Footprint.MODELS, Footprint.object(4, 16));
+        if (fp.visit(keys)) fp.add(Footprint.MODELS, Footprint.array(keys.length, 8));
+        if (fp.visit(path)) fp.add(Footprint.MODELS, Footprint.array(path.length, 4));
+        if (fp.visit(table)) fp.add(Footprint.MODELS, Footprint.array(table.length, 4));
+    }
+
+    long size() {
+        return 8L * keys.length + 4L * (level + 1) * keys.length + 4L * table.length;
+    }
+}
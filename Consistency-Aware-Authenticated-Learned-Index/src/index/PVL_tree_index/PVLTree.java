@@ -2,22 +2,62 @@ package index.PVL_tree_index;
 
 import index.learned_node_info.*;
 // import jdk.nashorn.internal.ir.debug.ObjectSizeCalculator; // Java 9+ 不可用
-import utils.IOTools;
-import utils.SHA;
+import utils.DigestEngine;
+import utils.Footprint;
+import utils.KeyFile;
 import utils.Utils;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import static index.HPVL_tree_index.HPVLIndex.*;
 
 public class PVLTree {
+    public static final int DIGEST_LEN = DigestEngine.LEN + 4;
+    // parallel build: worker pool (null = sequential) and the subtree height hashed on one thread,
+    // set through setBuildParallelism; a build reads the pool once and keeps it to the end
+    private static volatile ForkJoinPool buildPool;
+    private static volatile int seqHeight = 0;
+    // top table built with bulk loaded trees: radix bits (0 = off) and the entry limit of its level
+    private static volatile int topTableBits = 0;
+    private static volatile int topTableEntries = 1 << 17;
+
     BigInteger rootR;
     PVLNode root;
+    PVLTopTable topTable;
+    // the bulk load input, null for trees grown by update or opened from a snapshot, see keys()
     public long[] src;
     public int err;
+    // the snapshot file a tree from PVLTreeSnapshot.open reads its nodes from
+    PVLTreeSnapshot.MappedFile mapped;
+
+    //call between builds: the pool it replaces is shut down
+    public static synchronized void setBuildParallelism(int parallelism, int seqHeight) {
+        if (buildPool != null)
+            buildPool.shutdown();
+        PVLTree.seqHeight = seqHeight;
+        buildPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    //call between builds, a tree bulk loaded meanwhile may take either setting
+    public static synchronized void setTopTable(int radixBits, int maxEntries) {
+        topTableBits = radixBits;
+        topTableEntries = maxEntries;
+    }
+
+    //radix table that maps a key straight to its path down to a lower non-leaf level, kept until the next update
+    public void buildTopTable(int radixBits, int maxEntries) {
+        topTable = radixBits > 0 ? PVLTopTable.build(root, radixBits, maxEntries) : null;
+    }
+
+    public long getTopTableSize() {
+        return topTable == null ? 0 : topTable.size();
+    }
 
     public PVLTree(PVLTree tree, PVLNode root, BigInteger rootR) {
         this.root = root;
@@ -28,14 +68,26 @@ public class PVLTree {
     public PVLTree(long[] dataset, int err) {
         this.err = err;
         src = dataset;
-        buildLearnedTree(dataset);
-        rootR = buildAuthenticatedInfo(root);
+        ForkJoinPool pool = buildPool;
+        buildLearnedTree(dataset, pool);
+        if (pool != null)
+            rootR = pool.invoke(new AuthInfoTask(root, height(root)));
+        else
+            rootR = buildAuthenticatedInfo(root);
+        int bits = topTableBits;
+        if (bits > 0)
+            buildTopTable(bits, topTableEntries);
+    }
 
+    PVLTree(PVLNode root, BigInteger rootR, int err) {
+        this.root = root;
+        this.rootR = rootR;
+        this.err = err;
     }
 
     public PVLTree(long key, int err) {
         this.err = err;
-        buildLearnedTree(new long[]{key});
+        buildLearnedTree(new long[]{key}, null);
         rootR = buildAuthenticatedInfo(root);
     }
 
@@ -50,11 +102,52 @@ public class PVLTree {
         return node.computeRAndSetPies(sk0, sk1);
     }
 
+    static int height(PVLNode node) {
+        int h = 0;
+        for (; node.chd != null; node = node.child(0)) h++;
+        return h;
+    }
+
+    //Create authentication information for sibling subtrees concurrently, parent pies after its children
+    static class AuthInfoTask extends RecursiveTask<BigInteger> {
+        private static final long serialVersionUID = 1L;
+
+        final PVLNode node;
+
+        final int height;
+
+        AuthInfoTask(PVLNode node, int height) {
+            this.node = node;
+            this.height = height;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            if (node instanceof PVLNonLeafNode) {
+                PVLNonLeafNode nonLeafNode = (PVLNonLeafNode) node;
+                if (height <= seqHeight) {
+                    for (int i = 0; i < nonLeafNode.chd.length; ++i) {
+                        nonLeafNode.chdRes[i] = new AuthInfoTask(nonLeafNode.chd[i], height - 1).compute();
+                    }
+                } else {
+                    AuthInfoTask[] tasks = new AuthInfoTask[nonLeafNode.chd.length];
+                    for (int i = 0; i < tasks.length; ++i) {
+                        tasks[i] = new AuthInfoTask(nonLeafNode.chd[i], height - 1);
+                    }
+                    invokeAll(tasks);
+                    for (int i = 0; i < tasks.length; ++i) {
+                        nonLeafNode.chdRes[i] = tasks[i].join();
+                    }
+                }
+            }
+            return node.computeRAndSetPies(sk0, sk1);
+        }
+    }
+
     //build learned based tree
-    void buildLearnedTree(long[] dataset) {
-        //build leaf node
-        OptPLA optPLA = new OptPLA(dataset, err);
-        Segment[] segments = optPLA.getSegments();
+    void buildLearnedTree(long[] dataset, ForkJoinPool pool) {
+        //build leaf node, levels with many keys are segmented in parallel chunks when a build pool is set
+        Segment[] segments = ChunkedOptPLA.getSegments(dataset, err, pool);
         PVLNode[] nodes = new PVLNode[segments.length];
         long[] keys = new long[segments.length];
         for (int i = 0; i < segments.length; ++i) {
@@ -64,8 +157,7 @@ public class PVLTree {
 
         //build nonLeaf node
         while (keys.length > 1) {
-            optPLA = new OptPLA(keys, err);
-            segments = optPLA.getSegments();
+            segments = ChunkedOptPLA.getSegments(keys, err, pool);
             keys = new long[segments.length];
             PVLNode[] newNodes = new PVLNode[segments.length];
             int pos = 0;
@@ -81,7 +173,13 @@ public class PVLTree {
     }
 
     private VoInfo rangeQuery(long low, long high, PVLNode node, List<Long> res) {
-        int i = Math.max(node.findLeftBound(low, err), 0);
+        return rangeQuery(low, high, node, res, null, 0);
+    }
+
+    //lowPath: positions of the low bound on the upper levels, from the top table, null to search every level
+    private VoInfo rangeQuery(long low, long high, PVLNode node, List<Long> res, int[] lowPath, int depth) {
+        int i = lowPath != null && depth < lowPath.length ? lowPath[depth] : Math.max(node.findLeftBound(low, err), 0);
+        int start = i;
 
         VoInfo voInfo = new VoInfo(node, i);
 
@@ -97,12 +195,12 @@ public class PVLTree {
 
             for (; i < theNode.keys.length && theNode.keys[i] <= high; ++i) {
                 voInfo.add(theNode.chdRes[i]);
-                voInfo.chdNode.add(rangeQuery(low, high, theNode.chd[i], res));
+                voInfo.chdNode.add(rangeQuery(low, high, theNode.child(i), res, i == start ? lowPath : null, depth + 1));
             }
 
             // add right bound
             if (i < theNode.keys.length && (res.size() == 0 || res.get(res.size() - 1) < high)) {
-                voInfo.chdNode.add(rangeQuery(low, high, theNode.chd[i], res));
+                voInfo.chdNode.add(rangeQuery(low, high, theNode.child(i), res, i == start ? lowPath : null, depth + 1));
                 voInfo.add(theNode.chdRes[i]);
                 i++;
             }
@@ -131,10 +229,91 @@ public class PVLTree {
 
     public PVL_Res rangeQuery(long low, long high) {
         List<Long> res = new ArrayList<>();
-        VoInfo voInfo = rangeQuery(low, high, root, res);
+        VoInfo voInfo = rangeQuery(low, high, root, res, topTable == null ? null : topTable.positions(low), 0);
         return new PVL_Res(voInfo, res);
     }
 
+    //point lookup: one root-to-leaf descent, proves the key or its two neighbours
+    public PVLLookup_Res lookup(long key) {
+        int h = height(root) + 1;
+        PVLNode[] nodes = new PVLNode[h];
+        int[] pos = new int[h];
+        PVLNode node = root;
+        int from = 0;
+        if (topTable != null) {
+            // the table gives the upper path, searching starts below its level
+            int[] top = topTable.positions(key);
+            for (int l = 0; l < top.length; ++l) {
+                nodes[l] = node;
+                pos[l] = top[l];
+                node = node.child(top[l]);
+            }
+            from = top.length;
+        }
+        for (int l = from; l < h; ++l) {
+            nodes[l] = node;
+            pos[l] = exactLeftBound(node, key);
+            if (l < h - 1) {
+                pos[l] = Math.max(pos[l], 0);
+                node = node.child(pos[l]);
+            }
+        }
+
+        PVLLookup_Res res = new PVLLookup_Res(key);
+        int leaf = h - 1;
+        if (pos[leaf] < 0) {
+            // below the first key of the tree
+            pos[leaf] = 0;
+            res.succ = lookupPath(nodes, pos, 0);
+            return res;
+        }
+
+        res.pred = lookupPath(nodes, pos, 0);
+        res.found = res.pred.key == key;
+        if (res.found)
+            return res;
+
+        // successor: one step right at the deepest level that allows it, then leftmost down
+        int d = leaf;
+        while (d >= 0 && pos[d] + 1 >= nodes[d].keys.length) --d;
+        if (d < 0)
+            return res;
+        // at the split level one pie pair covers both entries
+        res.split = d;
+        res.pred.rightPies[d] = nodes[d].pies[pos[d] + 1];
+        pos[d]++;
+        for (int l = d + 1; l < h; ++l) {
+            nodes[l] = nodes[l - 1].child(pos[l - 1]);
+            pos[l] = 0;
+        }
+        res.succ = lookupPath(nodes, pos, d + 1);
+        return res;
+    }
+
+    //findLeftBound that also steps past the window when the truncated model prediction leaves it one entry short
+    private int exactLeftBound(PVLNode node, long key) {
+        int p = node.findLeftBound(key, err);
+        while (p + 1 < node.keys.length && node.keys[p + 1] <= key) ++p;
+        return p;
+    }
+
+    // levels [from, h) of the path through nodes at pos
+    private PVLLookup_Res.Path lookupPath(PVLNode[] nodes, int[] pos, int from) {
+        int h = nodes.length;
+        PVLLookup_Res.Path path = new PVLLookup_Res.Path(h);
+        for (int l = from; l < h; ++l) {
+            PVLNode node = nodes[l];
+            path.n[l] = node.keys.length;
+            path.pos[l] = pos[l];
+            if (pos[l] > 0)
+                path.leftPies[l] = node.pies[pos[l] - 1];
+            path.rightPies[l] = node.pies[pos[l]];
+            path.r[l] = l == 0 ? rootR : ((PVLNonLeafNode) nodes[l - 1]).chdRes[pos[l - 1]];
+        }
+        path.key = nodes[h - 1].keys[pos[h - 1]];
+        return path;
+    }
+
     /**
      * 批量范围查询 - 优化版本
      * 注意: 当前实现为了保证正确性,仍然逐个查询,但减少了函数调用开销
@@ -154,6 +333,98 @@ public class PVLTree {
         return results;
     }
 
+    //multi range query: one traversal for intervals sorted by low, one merged VO for all of them
+    public PVLMulti_Res multiRangeQuery(long[] lows, long[] highs) {
+        List<Long> res = new ArrayList<>();
+        int[] ks = new int[lows.length];
+        for (int k = 0; k < ks.length; ++k) ks[k] = k;
+        MultiVoInfo voInfo = multiRangeQuery(lows, highs, ks, root, res, new boolean[lows.length]);
+        return new PVLMulti_Res(voInfo, res);
+    }
+
+    // ks: the intervals reaching this node, hasBound[k]: the right bound of interval k is already in res
+    private MultiVoInfo multiRangeQuery(long[] lows, long[] highs, int[] ks, PVLNode node, List<Long> res, boolean[] hasBound) {
+        int n = node.keys.length;
+        int[] runs = new int[2 * n];
+        int runNum = 0;
+        MultiVoInfo voInfo;
+
+        if (node instanceof PVLNonLeafNode) { // non leaf node
+            // interval k needs children [s, e], and child e + 1 if its right bound is still missing after e
+            long[] cand = new long[ks.length * 4];
+            int candNum = 0;
+            for (int t = 0; t < ks.length; ++t) {
+                int s = Math.max(node.findLeftBound(lows[ks[t]], err), 0);
+                int e = Math.max(s, node.findLeftBound(highs[ks[t]], err));
+                for (int c = s; c <= e + 1 && c < n; ++c) {
+                    if (candNum == cand.length) cand = Arrays.copyOf(cand, cand.length * 2);
+                    cand[candNum++] = ((long) c << 1 | (c > e ? 1 : 0)) * ks.length + t;
+                }
+            }
+            Arrays.sort(cand, 0, candNum);
+
+            List<BigInteger> chdRes = new ArrayList<>();
+            List<MultiVoInfo> chdNode = new ArrayList<>();
+            int[] sub = new int[ks.length];
+            for (int i = 0; i < candNum; ) {
+                int c = (int) (cand[i] / ks.length >> 1);
+                int subNum = 0;
+                for (; i < candNum && cand[i] / ks.length >> 1 == c; ++i) {
+                    int t = (int) (cand[i] % ks.length);
+                    boolean maybe = (cand[i] / ks.length & 1) != 0;
+                    if (!maybe || !hasBound[ks[t]])
+                        sub[subNum++] = t;
+                }
+                if (subNum == 0)
+                    continue;
+                // back to interval order, definite and right bound entries were sorted apart
+                Arrays.sort(sub, 0, subNum);
+                int[] subKs = new int[subNum];
+                for (int j = 0; j < subNum; ++j) subKs[j] = ks[sub[j]];
+
+                chdRes.add(((PVLNonLeafNode) node).chdRes[c]);
+                chdNode.add(multiRangeQuery(lows, highs, subKs, node.child(c), res, hasBound));
+                runNum = addRun(runs, runNum, c, c);
+            }
+            voInfo = new MultiVoInfo(n, Arrays.copyOf(runs, 2 * runNum));
+            voInfo.chdRes = chdRes;
+            voInfo.chdNode = chdNode;
+        } else { // leaf node
+            for (int k : ks) {
+                int s = Math.max(node.findLeftBound(lows[k], err), 0);
+                int i = s;
+                while (i < n && node.keys[i] < highs[k]) ++i;
+                if (i < n)
+                    hasBound[k] = true;
+                else
+                    i = n - 1;
+                runNum = addRun(runs, runNum, s, i);
+            }
+            voInfo = new MultiVoInfo(n, Arrays.copyOf(runs, 2 * runNum));
+            for (int j = 0; j < runNum; ++j) {
+                for (int i = runs[2 * j]; i <= runs[2 * j + 1]; ++i)
+                    res.add(node.keys[i]);
+            }
+        }
+
+        for (int j = 0; j < runNum; ++j) {
+            if (runs[2 * j] != 0)
+                voInfo.voPies.add(node.pies[runs[2 * j] - 1]);
+            voInfo.voPies.add(node.pies[runs[2 * j + 1]]);
+        }
+        return voInfo;
+    }
+
+    // append [s, e] to sorted runs, merging with the last run when they overlap or touch
+    private static int addRun(int[] runs, int runNum, int s, int e) {
+        if (runNum > 0 && s <= runs[2 * runNum - 1] + 1) {
+            runs[2 * runNum - 1] = Math.max(runs[2 * runNum - 1], e);
+            return runNum;
+        }
+        runs[2 * runNum] = s;
+        runs[2 * runNum + 1] = e;
+        return runNum + 1;
+    }
 
 
     private PVLNode[] update(PVLNode node, long key) {
@@ -162,7 +433,7 @@ public class PVLTree {
         OptPLA pla = new OptPLA(err);
         if (node instanceof PVLNonLeafNode) {
             pos = Math.max(pos, 0);
-            PVLNode[] newNodes = update(node.chd[pos], key);
+            PVLNode[] newNodes = update(node.child(pos), key);
 
             PVLNonLeafNode theNode = (PVLNonLeafNode) node;
 
@@ -189,7 +460,7 @@ public class PVLTree {
                     chdNodes[i] = new PVLNode[segments[i].segData.length];
                     chdRes[i] = new BigInteger[segments[i].segData.length];
                 }
-                chdNodes[i][j] = theNode.chd[k];
+                chdNodes[i][j] = theNode.child(k);
                 chdRes[i][j] = theNode.chdRes[k];
                 ++j;
             }
@@ -209,7 +480,7 @@ public class PVLTree {
                     chdNodes[i] = new PVLNode[segments[i].segData.length];
                     chdRes[i] = new BigInteger[segments[i].segData.length];
                 }
-                chdNodes[i][j] = node.chd[k];
+                chdNodes[i][j] = node.child(k);
                 chdRes[i][j] = theNode.chdRes[k];
                 ++j;
             }
@@ -240,8 +511,80 @@ public class PVLTree {
 
 
     public PVLTree update(long key) {
-        PVLNode[] nodes = update(root, key);
+        return newVersion(update(root, key));
+    }
+
+    //insert sortedKeys[from, to), ascending, into the subtree of node; every touched node is rebuilt and hashed once
+    private PVLNode[] update(PVLNode node, long[] sortedKeys, int from, int to) {
+        OptPLA pla = new OptPLA(err);
+        if (node instanceof PVLNonLeafNode) {
+            PVLNonLeafNode theNode = (PVLNonLeafNode) node;
+            int n = theNode.keys.length;
+            List<PVLNode> chdNodes = new ArrayList<>(n + 1);
+            List<BigInteger> chdRes = new ArrayList<>(n + 1);
+            int next = 0;
+            for (int k = from; k < to; ) {
+                int pos = Math.max(exactLeftBound(theNode, sortedKeys[k]), 0);
+                // the keys routed to the same child are the ones below its right sibling
+                int e = k + 1;
+                while (e < to && (pos + 1 == n || sortedKeys[e] < theNode.keys[pos + 1])) ++e;
+                for (; next < pos; ++next) {
+                    pla.addKey(theNode.keys[next]);
+                    chdNodes.add(theNode.child(next));
+                    chdRes.add(theNode.chdRes[next]);
+                }
+                for (PVLNode newNode : update(theNode.child(pos), sortedKeys, k, e)) {
+                    pla.addKey(newNode.keys[0]);
+                    chdNodes.add(newNode);
+                    chdRes.add(newNode.computeRAndSetPies(sk0, sk1));
+                }
+                next = pos + 1;
+                k = e;
+            }
+            for (; next < n; ++next) {
+                pla.addKey(theNode.keys[next]);
+                chdNodes.add(theNode.child(next));
+                chdRes.add(theNode.chdRes[next]);
+            }
+            pla.stop();
+            Segment[] segments = pla.getSegments();
+            PVLNode[] updatedNodes = new PVLNode[segments.length];
+            int pos = 0;
+            for (int k = 0; k < segments.length; ++k) {
+                int len = segments[k].segData.length;
+                updatedNodes[k] = new PVLNonLeafNode(segments[k], chdNodes.subList(pos, pos + len).toArray(new PVLNode[0]),
+                        chdRes.subList(pos, pos + len).toArray(new BigInteger[0]));
+                pos += len;
+            }
+            return updatedNodes;
+        }
 
+        // leaf: merge, an inserted key goes after equal keys already present
+        long[] keys = node.keys;
+        int i = 0;
+        for (int k = from; k < to; ++k) {
+            for (; i < keys.length && keys[i] <= sortedKeys[k]; ++i) pla.addKey(keys[i]);
+            pla.addKey(sortedKeys[k]);
+        }
+        for (; i < keys.length; ++i) pla.addKey(keys[i]);
+        pla.stop();
+        Segment[] segments = pla.getSegments();
+        PVLNode[] updatedNodes = new PVLNode[segments.length];
+        for (int k = 0; k < segments.length; ++k) {
+            updatedNodes[k] = new PVLLeafNode(segments[k]);
+        }
+        return updatedNodes;
+    }
+
+    //insert a batch of ascending keys, one new version for the whole batch
+    public PVLTree update(long[] sortedKeys) {
+        if (sortedKeys.length == 0)
+            return this;
+        return newVersion(update(root, sortedKeys, 0, sortedKeys.length));
+    }
+
+    //new version over the rebuilt top nodes, adding levels until a single root remains
+    private PVLTree newVersion(PVLNode[] nodes) {
         while (nodes.length > 1) {
             long[] keys = new long[nodes.length];
             int pos = 0;
@@ -265,167 +608,433 @@ public class PVLTree {
     }
 
 
-    //lookup verify
+    //all keys in order: src when the tree was bulk loaded, else read from the leaves
+    public long[] keys() {
+        if (src != null)
+            return src;
+        List<long[]> leaves = new ArrayList<>();
+        collectLeafKeys(root, leaves);
+        int n = 0;
+        for (long[] leaf : leaves) n += leaf.length;
+        long[] keys = new long[n];
+        n = 0;
+        for (long[] leaf : leaves) {
+            System.arraycopy(leaf, 0, keys, n, leaf.length);
+            n += leaf.length;
+        }
+        return keys;
+    }
+
+    private static void collectLeafKeys(PVLNode node, List<long[]> leaves) {
+        if (node.chd == null) {
+            leaves.add(node.keys);
+            return;
+        }
+        for (int i = 0; i < node.keys.length; ++i)
+            collectLeafKeys(node.child(i), leaves);
+    }
+
+    //unmap the snapshot file of a tree from PVLTreeSnapshot.open, no-op for trees on the heap;
+    //nodes not materialised yet can no longer be read, so no query may run on the tree during or after close
+    public void close() {
+        if (mapped != null)
+            mapped.close();
+    }
+
+    //smallest key, with maxKey the fences of this tree's key range
+    public long minKey() {
+        PVLNode node = root;
+        while (node.chd != null) node = node.child(0);
+        return node.keys[0];
+    }
+
+    public long maxKey() {
+        PVLNode node = root;
+        while (node.chd != null) node = node.child(node.keys.length - 1);
+        return node.keys[node.keys.length - 1];
+    }
+
+    //root digest of this version, all a client needs to verify a PVL_Res: root r, then the root key count
+    public byte[] rootDigest() {
+        byte[] digest = new byte[DIGEST_LEN];
+        DigestEngine.toFixedBytes(rootR, digest, 0);
+        int n = root.keys.length;
+        for (int i = 0; i < 4; ++i)
+            digest[DigestEngine.LEN + i] = (byte) (n >>> (24 - 8 * i));
+        return digest;
+    }
+
+    public static BigInteger digestR(byte[] digest) {
+        return new BigInteger(1, Arrays.copyOf(digest, DigestEngine.LEN));
+    }
+
+    public static int digestN(byte[] digest) {
+        int n = 0;
+        for (int i = 0; i < 4; ++i)
+            n = n << 8 | digest[DigestEngine.LEN + i] & 0xff;
+        return n;
+    }
+
+    //a PVL_Res for key: the range check with low = high = key, so a result set missing key is caught
     public boolean verify(long tar, PVL_Res res) {
-        resTag = 0;
-        ResInfo resInfo = new ResInfo();
-        boolean isPass = verify(tar, rootR, res.node, res.res, true, true, resInfo);
+        return verify(rootR, root.keys.length, tar, tar, res);
+    }
 
-        if (!isPass || !resInfo.hasRightBound || !resInfo.hasLeafBound)
-            return false;
+    public static boolean verify(BigInteger rootR, int rootN, long tar, PVL_Res res) {
+        return verify(rootR, rootN, tar, tar, res);
+    }
 
-        return true;
+    // per-call verification state, so concurrent verify calls on one tree do not share a cursor
+    static class ResInfo {
+        int resTag = 0;
+        PVLBatchVerifier.Cache cache; // position and child entry hashes shared by one batch
     }
+    //range check of one VO node, its results are res[first, resTag) once it returns; entries hidden left of
+    //startPos need a result <= low, entries hidden right of endPos a result >= high
+    private static boolean travelVoTree(long low, long high, BigInteger r, VoInfo voNode, List<Long> res, ResInfo resInfo) {
+        int i = voNode.startPos;
+        if (i < 0 || voNode.endPos < i || voNode.endPos >= voNode.n || voNode.voPies == null || voNode.voPies.size() != (i == 0 ? 1 : 2))
+            return false;
 
-    public boolean verify(long tar, BigInteger r, VoInfo voNode, List<Long> res, boolean isFirstKey, boolean isLastKey, ResInfo resInfo) {
+        DigestEngine.Prefix p0 = DigestEngine.prefix(sk0);
+        // only upper nodes are shared between the VOs of a batch, leaves hash directly
+        PVLBatchVerifier.Cache cache = voNode.isLeafNode() ? null : resInfo.cache;
+        DigestEngine.Prefix pr = cache == null ? DigestEngine.prefix(sk1).with(r) : null;
         byte[] bStart, bEnd;
-        int i = voNode.startPos;
+        byte[] h = new byte[DigestEngine.LEN];
         if (i == 0) {
-            bStart = new byte[32];
-//            bEnd = Utils.encPosHash(sk1, r, voNode.voPies.get(0), voNode.chdRes.size() - 1);
-            bEnd = Utils.encPosHash(sk1, r, voNode.voPies.get(0), voNode.endPos);
+            bStart = new byte[DigestEngine.LEN];
+            bEnd = cache == null ? DigestEngine.encPos(pr, voNode.voPies.get(0), voNode.endPos) : cache.encPos(r, voNode.voPies.get(0), voNode.endPos);
         } else {
-            bStart = Utils.encPosHash(sk1, r, voNode.voPies.get(0), i - 1);
-//            bEnd = Utils.encPosHash(sk1, r, voNode.voPies.get(1), voNode.startPos + voNode.chdRes.size() - 1);
-            bEnd = Utils.encPosHash(sk1, r, voNode.voPies.get(1), voNode.endPos);
+            bStart = cache == null ? DigestEngine.encPos(pr, voNode.voPies.get(0), i - 1) : cache.encPos(r, voNode.voPies.get(0), i - 1);
+            bEnd = cache == null ? DigestEngine.encPos(pr, voNode.voPies.get(1), voNode.endPos) : cache.encPos(r, voNode.voPies.get(1), voNode.endPos);
         }
 
-
+        int first = resInfo.resTag;
         if (voNode.isLeafNode()) {
-            //verify leaf bound if it has not verify
-            if (!resInfo.hasLeafBound) {
-                if (isFirstKey && i == 0 || res.get(0) <= tar) {
-                    resInfo.hasLeafBound = true;
+            if (first + voNode.endPos - i + 1 > res.size())
+                return false;
+            for (; i <= voNode.endPos; ++i) {
+                DigestEngine.hashKey(p0, res.get(resInfo.resTag++), h);
+                DigestEngine.xorInto(bStart, h);
+            }
+        } else {
+            int chdNum = voNode.endPos - i + 1;
+            if (voNode.chdRes == null || voNode.chdRes.size() != chdNum || voNode.chdNode.size() != chdNum)
+                return false;
+            for (int j = 0; j < chdNum; ++j) {
+                if (cache == null) {
+                    DigestEngine.hashChild(p0, voNode.chdRes.get(j), voNode.chdNode.get(j).n, h);
+                    DigestEngine.xorInto(bStart, h);
+                } else {
+                    DigestEngine.xorInto(bStart, cache.childHash(voNode.chdRes.get(j), voNode.chdNode.get(j).n));
                 }
+
+                if (!travelVoTree(low, high, voNode.chdRes.get(j), voNode.chdNode.get(j), res, resInfo))
+                    return false;
             }
+        }
 
-//            for (; i < voNode.n; ++i) {
-//                bStart = SHA.bytesXor(bStart, SHA.hashToBytes(sk0 + res.get(resTag++)));
-//                if (Arrays.equals(bStart, bEnd))
-//                    break;
-//            }
-//            if (i == voNode.n)
-//                return false;
+        if (!Arrays.equals(bStart, bEnd))
+            return false;
 
-            for (; i <= voNode.endPos; ++i) {
-                bStart = SHA.bytesXor(bStart, SHA.hashToBytes(sk0 + res.get(resTag++)));
-            }
+        // results are sorted, so the first and last bound what is hidden on either side
+        return (voNode.startPos == 0 || res.get(first) <= low)
+                && (voNode.endPos == voNode.n - 1 || res.get(resInfo.resTag - 1) >= high);
+    }
+
+    public boolean verify(long low, long high, PVL_Res PVL_res) {
+        return verify(rootR, root.keys.length, low, high, PVL_res);
+    }
+
+    //range verify against a root digest only (root r and key count), no tree needed
+    public static boolean verify(BigInteger rootR, int rootN, long low, long high, PVL_Res PVL_res) {
+        return verify(rootR, rootN, low, high, PVL_res, null);
+    }
+
+    static boolean verify(BigInteger rootR, int rootN, long low, long high, PVL_Res PVL_res, PVLBatchVerifier.Cache cache) {
+        // the root count is authenticated by the digest, not by the VO
+        if (rootR == null || PVL_res == null || PVL_res.node == null || PVL_res.res == null || PVL_res.node.n != rootN)
+            return false;
+        List<Long> res = PVL_res.res;
+        for (int i = 1; i < res.size(); ++i) {
+            if (res.get(i) < res.get(i - 1))
 
-            if (!Arrays.equals(bStart, bEnd))
                 return false;
+        }
 
-            //verify right bound
-            if (isLastKey && i == voNode.n || res.get(res.size() - 1) >= tar) {
-                resInfo.hasRightBound = true;
-            }
+        ResInfo resInfo = new ResInfo();
+        resInfo.cache = cache;
+        // every node pies and bounds, and every result accounted for
+        return travelVoTree(low, high, rootR, PVL_res.node, res, resInfo) && resInfo.resTag == res.size();
+    }
 
-        } else {
-            for (int j = 0; j < voNode.chdRes.size(); ++j) {
-                bStart = SHA.bytesXor(bStart, SHA.hashToBytes(sk0 + voNode.chdRes.get(j) + voNode.chdNode.get(j).n));
+    public boolean verify(long[] lows, long[] highs, PVLMulti_Res multiRes) {
+        return verify(rootR, root.keys.length, lows, highs, multiRes);
+    }
+
+    //multi range verify: every interval must lie inside one gap-free run of authenticated keys
+    public static boolean verify(BigInteger rootR, int rootN, long[] lows, long[] highs, PVLMulti_Res multiRes) {
+        List<Long> res = multiRes.res;
+        // the root count from the digest decides which run ends at the last key of the tree
+        if (res.isEmpty() || multiRes.node.n != rootN)
+            return false;
+
+        MultiResInfo resInfo = new MultiResInfo(res.size());
+        int edges = verifyMulti(rootR, multiRes.node, res, resInfo);
+        if (edges < 0 || resInfo.resTag != res.size())
+            return false;
 
-                if (!verify(tar, voNode.chdRes.get(j), voNode.chdNode.get(j), res, isFirstKey && i + j == 0, isLastKey && i + j == voNode.n - 1, resInfo))
+        // chunks of keys adjacent in the whole key set
+        int[] chunkStart = new int[res.size() + 1];
+        int chunkNum = 0;
+        for (int i = 0; i < res.size(); ++i) {
+            if (i > 0 && res.get(i) < res.get(i - 1))
+                return false;
+            if (resInfo.gap[i])
+                chunkStart[chunkNum++] = i;
+        }
+        chunkStart[chunkNum] = res.size();
+
+        for (int k = 0; k < lows.length; ++k) {
+            // the last chunk starting at or before low, the first chunk only if it starts at the minimum key
+            int l = 0, r = chunkNum - 1;
+            while (l <= r) {
+                int mid = (l + r) >>> 1;
+                if (res.get(chunkStart[mid]) <= lows[k]) l = mid + 1;
+                else r = mid - 1;
+            }
+            int c = r;
+            if (c < 0) {
+                if ((edges & 1) == 0)
                     return false;
+                c = 0;
             }
-
-            if (!Arrays.equals(bStart, bEnd))
+            boolean isLastChunk = c == chunkNum - 1;
+            if (res.get(chunkStart[c + 1] - 1) < highs[k] && !(isLastChunk && (edges & 2) != 0))
                 return false;
         }
-
         return true;
     }
 
-
-    private int resTag;
-    private class ResInfo {
-        boolean hasLeafBound = false;
-        boolean hasRightBound = false;
+    public boolean verify(long key, PVLLookup_Res res) {
+        return verify(rootR, root.keys.length, key, res);
     }
-    private boolean travelVoTree(long low, long high, BigInteger r, VoInfo voNode, List<Long> res, boolean isFirstKey, boolean isLastKey, ResInfo resInfo) {
-        byte[] bStart, bEnd;
-        int i = voNode.startPos;
-        if (i == 0) {
-            bStart = new byte[32];
-            bEnd = Utils.encPosHash(sk1, r, voNode.voPies.get(0), voNode.endPos);
-        } else {
-            bStart = Utils.encPosHash(sk1, r, voNode.voPies.get(0), voNode.startPos);
-            bEnd = Utils.encPosHash(sk1, r, voNode.voPies.get(1), voNode.endPos);
-        }
 
-        if (voNode.isLeafNode()) {
+    //lookup verify: membership, or two neighbours that are adjacent in the key set around key
+    public static boolean verify(BigInteger rootR, int rootN, long key, PVLLookup_Res res) {
+        PVLLookup_Res.Path pred = res.pred, succ = res.succ;
+        if (res.key != key || pred == null && succ == null)
+            return false;
+        // the root size comes from the digest, deeper sizes are bound by the child entries; succ shares the
+        // levels above the split with pred and carries its own root level only without pred
+        PVLLookup_Res.Path top = pred != null ? pred : succ;
+        if (top.n.length == 0 || top.n[0] != rootN)
+            return false;
 
-            // has not left bound
-            if (i != 0 && res.get(resTag) > low)
+        if (pred == null) {
+            // below the first key of the tree
+            if (succ.key <= key || !verifyPath(rootR, succ, 0))
                 return false;
+            for (int pos : succ.pos) {
+                if (pos != 0)
+                    return false;
+            }
+            return true;
+        }
 
-            //check whether the key res is the left boundary
-            if (res.get(resTag) <= low || isFirstKey && i == 0)
-                resInfo.hasLeafBound = true;
-
-            for (; i <= voNode.endPos; ++i) {
-                bStart = SHA.bytesXor(bStart, SHA.hashToBytes(sk0 + res.get(resTag++)));
+        if (succ == null) {
+            if (!verifyPath(rootR, pred, 0))
+                return false;
+            if (res.found)
+                return pred.key == key;
+            // above the last key of the tree
+            for (int l = 0; l < pred.n.length; ++l) {
+                if (pred.pos[l] != pred.n[l] - 1)
+                    return false;
             }
+            return pred.key < key;
+        }
 
-            if (!Arrays.equals(bStart, bEnd))
+        int h = pred.n.length, d = res.split;
+        if (res.found || pred.key >= key || succ.key <= key || succ.n.length != h || d < 0 || d >= h)
+            return false;
+        // shared levels above the split
+        if (d > 0 && !verifyLevels(rootR, pred, 0, d))
+            return false;
+
+        // split level: pie[pos - 1] and pie[pos + 1] cover the pred and succ entries together
+        int pos = pred.pos[d];
+        if (pos < 0 || pos + 1 >= pred.n[d] || pred.rightPies[d] == null || pos > 0 && pred.leftPies[d] == null)
+            return false;
+        DigestEngine.Prefix pr = DigestEngine.prefix(sk1).with(d == 0 ? rootR : pred.r[d]);
+        byte[] entries = DigestEngine.encPos(pr, pred.rightPies[d], pos + 1);
+        if (pos > 0)
+            DigestEngine.xorInto(entries, DigestEngine.encPos(pr, pred.leftPies[d], pos - 1));
+        byte[] h1 = entryHash(pred, d), h2 = entryHash(succ, d);
+        if (h1 == null || h2 == null)
+            return false;
+        DigestEngine.xorInto(h1, h2);
+        if (!Arrays.equals(entries, h1))
+            return false;
+
+        if (d < h - 1 && (!verifyLevels(pred.r[d + 1], pred, d + 1, h) || !verifyLevels(succ.r[d + 1], succ, d + 1, h)))
+            return false;
+        // pred leaves the split node rightmost, succ enters leftmost
+        for (int l = d + 1; l < h; ++l) {
+            if (pred.pos[l] != pred.n[l] - 1 || succ.pos[l] != 0)
                 return false;
+        }
+        return true;
+    }
 
-            //check whether the key res is the right boundary
-            if (res.get(resTag - 1) >= high || isLastKey && i == voNode.n - 1)
-                resInfo.hasRightBound = true;
+    private static boolean verifyPath(BigInteger rootR, PVLLookup_Res.Path path, int from) {
+        return verifyLevels(rootR, path, from, path.n.length);
+    }
 
-            // has not right bound
-            if (i != voNode.n - 1 && res.get(resTag - 1) < high)
+    // each level in [from, to) proves the entry at pos: the next level's (r, n), or the key at the leaf
+    private static boolean verifyLevels(BigInteger r, PVLLookup_Res.Path path, int from, int to) {
+        for (int l = from; l < to; ++l) {
+            int pos = path.pos[l];
+            if (pos < 0 || pos >= path.n[l] || path.rightPies[l] == null || pos > 0 && path.leftPies[l] == null)
+                return false;
+            DigestEngine.Prefix pr = DigestEngine.prefix(sk1).with(r);
+            byte[] entry = DigestEngine.encPos(pr, path.rightPies[l], pos);
+            if (pos > 0)
+                DigestEngine.xorInto(entry, DigestEngine.encPos(pr, path.leftPies[l], pos - 1));
+            byte[] h = entryHash(path, l);
+            if (h == null || !Arrays.equals(entry, h))
                 return false;
+            if (l + 1 < path.n.length)
+                r = path.r[l + 1];
+        }
+        return true;
+    }
 
+    // hash of the entry a path takes at level l: H(sk0 || key) at the leaf, H(sk0 || r || n) of the next level above
+    private static byte[] entryHash(PVLLookup_Res.Path path, int l) {
+        byte[] h = new byte[DigestEngine.LEN];
+        if (l == path.n.length - 1) {
+            DigestEngine.hashKey(DigestEngine.prefix(sk0), path.key, h);
         } else {
-            for (int j = 0; j < voNode.chdRes.size(); ++j) {
-                bStart = SHA.bytesXor(bStart, SHA.hashToBytes(sk0 + voNode.chdRes.get(j)));
+            if (path.r[l + 1] == null)
+                return null;
+            DigestEngine.hashChild(DigestEngine.prefix(sk0), path.r[l + 1], path.n[l + 1], h);
+        }
+        return h;
+    }
 
-                if (!travelVoTree(low, high, voNode.chdRes.get(j), voNode.chdNode.get(j), res, isFirstKey && j + i == 0, isLastKey && i + j == voNode.n - 1, resInfo))
-                    return false;
-            }
+    static class MultiResInfo {
+        int resTag = 0;
+        final boolean[] gap; // gap[i]: res[i] is not the successor of res[i - 1] in the key set
 
+        MultiResInfo(int size) {
+            gap = new boolean[size];
+        }
+    }
+
+    // checks the pies of every run; returns bit0 = starts at the node's first key, bit1 = ends at its last key, -1 on failure
+    private static int verifyMulti(BigInteger r, MultiVoInfo voNode, List<Long> res, MultiResInfo resInfo) {
+        DigestEngine.Prefix p0 = DigestEngine.prefix(sk0);
+        DigestEngine.Prefix pr = DigestEngine.prefix(sk1).with(r);
+        byte[] h = new byte[DigestEngine.LEN];
+        int[] runs = voNode.runs;
+        int runNum = voNode.runCount();
+        if (runNum == 0)
+            return -1;
+
+        int pie = 0, chd = 0, edges = 0;
+        boolean lastEndsRight = false;
+        for (int j = 0; j < runNum; ++j) {
+            int s = runs[2 * j], e = runs[2 * j + 1];
+            if (s > e || e >= voNode.n || j > 0 && s <= runs[2 * j - 1] + 1)
+                return -1;
+            if (pie + (s == 0 ? 1 : 2) > voNode.voPies.size())
+                return -1;
+            byte[] bStart = s == 0 ? new byte[DigestEngine.LEN] : DigestEngine.encPos(pr, voNode.voPies.get(pie++), s - 1);
+            byte[] bEnd = DigestEngine.encPos(pr, voNode.voPies.get(pie++), e);
+
+            for (int i = s; i <= e; ++i) {
+                if (voNode.isLeafNode()) {
+                    if (resInfo.resTag >= res.size())
+                        return -1;
+                    resInfo.gap[resInfo.resTag] = i == s;
+                    DigestEngine.hashKey(p0, res.get(resInfo.resTag++), h);
+                    DigestEngine.xorInto(bStart, h);
+                } else {
+                    if (chd >= voNode.chdNode.size())
+                        return -1;
+                    BigInteger chdR = voNode.chdRes.get(chd);
+                    MultiVoInfo chdNode = voNode.chdNode.get(chd++);
+                    DigestEngine.hashChild(p0, chdR, chdNode.n, h);
+                    DigestEngine.xorInto(bStart, h);
+
+                    int first = resInfo.resTag;
+                    int chdEdges = verifyMulti(chdR, chdNode, res, resInfo);
+                    if (chdEdges < 0)
+                        return -1;
+                    // neighbouring children join only if the left one ends at its last key and the right one starts at its first
+                    resInfo.gap[first] = i == s || !lastEndsRight || (chdEdges & 1) == 0;
+                    lastEndsRight = (chdEdges & 2) != 0;
+                    if (i == 0 && (chdEdges & 1) != 0)
+                        edges |= 1;
+                    if (i == voNode.n - 1 && lastEndsRight)
+                        edges |= 2;
+                }
+            }
             if (!Arrays.equals(bStart, bEnd))
-                return false;
+                return -1;
         }
+        if (pie != voNode.voPies.size() || !voNode.isLeafNode() && chd != voNode.chdNode.size())
+            return -1;
 
-        return true;
+        if (voNode.isLeafNode()) {
+            if (runs[0] == 0)
+                edges |= 1;
+            if (runs[2 * runNum - 1] == voNode.n - 1)
+                edges |= 2;
+        }
+        return edges;
     }
 
-    public boolean verify(long low, long high, PVL_Res PVL_res) {
-        resTag = 0;
-        ResInfo resInfo = new ResInfo();
-
-        // verify every node pies
-        if (!verify(low, rootR, PVL_res.node, PVL_res.res, true, true, resInfo))
-            return false;
+    public PVLBatchVerifier batchVerifier() {
+        return new PVLBatchVerifier(rootR, root.keys.length);
+    }
 
-        // has not left or right bound
-        if (!resInfo.hasLeafBound || !resInfo.hasRightBound)
-            return false;
+    //walk this version into fp, nodes shared with versions already walked are counted once
+    public void footprint(Footprint fp) {
+        if (!fp.visit(this)) return;
+        fp.add(Footprint.NODES, Footprint.object(4, 4));
+        fp.addBigInteger(Footprint.CHD_RES, rootR);
+        if (root != null) root.footprint(fp);
+        if (topTable != null) topTable.footprint(fp);
+    }
 
-        return true;
+    public Footprint footprint() {
+        Footprint fp = new Footprint();
+        footprint(fp);
+        return fp;
     }
 
     public void getIndexSize() {
-        System.setProperty("java.vm.name", "Java HotSpot(TM) ");
-        // ObjectSizeCalculator 在 Java 9+ 中不可用
-        // long piSize = ObjectSizeCalculator.getObjectSize(root);
-        // System.out.println("ALTree size:" + piSize / 1024.0 / 1024.0 + "mb");
-        System.out.println("ALTree size: (需要 Java 8 或添加 ObjectSizeCalculator 库)");
+        System.out.println("ALTree size:" + footprint());
     }
 
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         long s,e;
         long low = 10, high = 1000000000L;
         int len = 100000000;
         int queryLen = 1000;
 //        long[] dataset = Utils.buildRandArr(len, low, high, null);
-        long[] dataset = IOTools.readData("D:\\paper_source\\work_4\\dataset\\Longitudes_100M", len);
+        long[] dataset;
+        try (KeyFile keyFile = KeyFile.open("D:\\paper_source\\work_4\\dataset\\Longitudes_100M.keys")) {
+            dataset = keyFile.readKeys(len);
+            low = keyFile.min; high = keyFile.max;
+        }
         double[] queryRange = new double[]{0.0001, 0.001, 0.005, 0.01, 0.015, 0.02};
         int err = 128;
-        low = IOTools.low; high = IOTools.high;
 
         Arrays.sort(dataset);
         PVLTree PVLTree = new PVLTree(dataset, err);
@@ -457,7 +1066,7 @@ public class PVLTree {
                 voSize += sz;
 
                 s = System.nanoTime();
-                boolean isPass = PVLTree.verify(queryArr[i][0], PVL_res);
+                boolean isPass = PVLTree.verify(queryArr[i][0], queryArr[i][1], PVL_res);
                 e = System.nanoTime();
                 verifyTime += e - s;
 //                System.out.println("alTree verify time:" + (e - s) + "ns");
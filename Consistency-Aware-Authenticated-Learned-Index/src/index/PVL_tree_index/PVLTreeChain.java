@@ -1,24 +1,49 @@
 package index.PVL_tree_index;
 
 // import jdk.nashorn.internal.ir.debug.ObjectSizeCalculator; // Java 9+ 不可用
+import utils.Footprint;
 import utils.IOTools;
+import utils.RetentionPolicy;
 import utils.Utils;
+import utils.VersionHistory;
+
+import java.util.Arrays;
 
 public class PVLTreeChain {
 
     static int err;
     PVLTree[] chain;
+    long[] publishedAt;
     int front, rear;
+    // versions that left the ring and are kept by the retention policy
+    final VersionHistory<PVLTree> history = new VersionHistory<>();
 
     int currentVersion;
 
+    // group commit: inserts wait in pending until the window holds groupSize keys or is groupNanos old
+    int groupSize = 1;
+    long groupNanos = 0;
+    long[] pending = new long[1];
+    int pendingCount;
+    long pendingSince;
+
     public PVLTreeChain(int chainLen, int err) {
         chain = new PVLTree[chainLen];
+        publishedAt = new long[chainLen];
         currentVersion = 0;
         front = rear = 0;
         this.err = err;
     }
 
+    //close a window at maxKeys keys or maxDelayMillis after its first insert, whichever comes first;
+    //maxKeys <= 1 drops the count limit, both off publishes one version per insert
+    public void setGroupCommit(int maxKeys, long maxDelayMillis) {
+        commit();
+        groupSize = Math.max(maxKeys, 1);
+        groupNanos = Math.max(maxDelayMillis, 0) * 1000000;
+        pending = new long[groupNanos > 0 ? 16 : groupSize];
+    }
+
     public boolean isNull() {
         return front == rear;
     }
@@ -28,22 +53,77 @@ public class PVLTreeChain {
     }
 
     public void insert(long key) {
+        if (groupSize <= 1 && groupNanos == 0) {
+            if (isNull()) {
+                publish(new PVLTree(key, err));
+            } else {
+                publish(chain[(rear + chain.length - 1) % chain.length].update(key));
+            }
+            return;
+        }
+
+        if (pendingCount == 0)
+            pendingSince = System.nanoTime();
+        if (pendingCount == pending.length)
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        pending[pendingCount++] = key;
+        // a time window closes on the first insert after it expires, or on commit()
+        if (pendingCount >= groupSize && groupSize > 1 || groupNanos > 0 && System.nanoTime() - pendingSince >= groupNanos)
+            commit();
+    }
+
+    //apply the pending keys as one batch and publish them as a single version
+    public void commit() {
+        if (pendingCount == 0)
+            return;
+        long[] keys = Arrays.copyOf(pending, pendingCount);
+        pendingCount = 0;
+        Arrays.sort(keys);
         if (isNull()) {
-            chain[rear] = new PVLTree(key, err);
+            publish(new PVLTree(keys, err));
         } else {
+            publish(chain[(rear + chain.length - 1) % chain.length].update(keys));
+        }
+    }
 
-            chain[rear] = chain[(rear + chain.length - 1) % chain.length].update(key);
+    //null keeps only the ring, as before
+    public void setRetention(RetentionPolicy policy) {
+        history.setPolicy(policy, currentVersion);
+    }
 
-            if (isFull()) {
-                front = (front + 1) % chain.length;
-            }
+    public int getCheckpointCount() {
+        return history.size();
+    }
+
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    private void publish(PVLTree tree) {
+        chain[rear] = tree;
+        publishedAt[rear] = System.currentTimeMillis();
+        if ((rear + 1) % chain.length == front) {
+            // the oldest version leaves the ring
+            history.offer(currentVersion + 2 - chain.length, publishedAt[front], chain[front], currentVersion + 1);
+            front = (front + 1) % chain.length;
         }
         rear = (rear + 1) % chain.length;
+        currentVersion++;
     }
 
+    int ringSize() {
+        return (rear - front + chain.length) % chain.length;
+    }
 
+    //version currentVersion is the latest published tree, versions older than the ring come from the checkpoints
     public PVLTree getVersionTree(int version) {
-        return chain[(rear - currentVersion + version + chain.length) % chain.length];
+        if (currentVersion - version >= ringSize() && history.getPolicy() != null)
+            return history.get(version);
+        return chain[((rear - 1 - currentVersion + version) % chain.length + chain.length) % chain.length];
     }
 
     public PVL_Res rangeQuery(long low, long high, int version) {
@@ -55,11 +135,19 @@ public class PVLTreeChain {
         return tree.verify(low, high, res);
     }
 
+    //every tree still held by the ring, nodes shared between versions counted once
+    public Footprint footprint() {
+        Footprint fp = new Footprint();
+        fp.add(Footprint.NODES, Footprint.array(chain.length, 4));
+        for (PVLTree tree : chain)
+            if (tree != null) tree.footprint(fp);
+        for (PVLTree tree : history.values())
+            tree.footprint(fp);
+        return fp;
+    }
+
     public void getIndexSize() {
-        System.setProperty("java.vm.name", "Java HotSpot(TM) ");
-        // long sz = ObjectSizeCalculator.getObjectSize(chain);
-        // System.out.println("ALBTree size:" + sz / 1024.0 / 1024.0 + "mb");
-        System.out.println("ALBTree size: (需要 Java 8)");
+        System.out.println("ALTree chain size:" + footprint());
     }
 
 
@@ -0,0 +1,234 @@
+package index.PVL_tree_index;
+
+import index.learned_node_info.Model;
+import index.learned_node_info.Segment;
+import utils.DigestEngine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+On-disk PVLTree snapshot.
+header: magic(long) version(int) err(int) rootOffset(long) rootR(32 bytes)
+node  : type(byte, 0 leaf / 1 nonLeaf) n(int) slop(double) inter(double) keys(n longs) pies(n * 32 bytes)
+        nonLeaf only: chdRes(n * 32 bytes) chdOffset(n longs)
+Nodes are written children first, so every parent knows its children's offsets.
+open() maps the file and reads only the root; every other node is materialised when a
+query first reaches it through PVLNode.child(i). PVLTree.close() unmaps the file.
+ */
+public class PVLTreeSnapshot {
+    static final long MAGIC = 0x50564c5452454531L; // "PVLTREE1"
+    static final int VERSION = 1;
+    static final int HEADER = 8 + 4 + 4 + 8 + DigestEngine.LEN;
+    static final int REGION = 1 << 30;
+
+    public static void write(PVLTree tree, String path) throws IOException {
+        long rootOffset;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 20))) {
+            out.write(new byte[HEADER]);
+            long[] pos = new long[]{HEADER};
+            rootOffset = writeNode(tree.root, out, pos);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            byte[] rootR = new byte[DigestEngine.LEN];
+            DigestEngine.toFixedBytes(tree.rootR, rootR, 0);
+            file.writeLong(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(tree.err);
+            file.writeLong(rootOffset);
+            file.write(rootR);
+        }
+    }
+
+    private static long writeNode(PVLNode node, DataOutputStream out, long[] pos) throws IOException {
+        int n = node.keys.length;
+        long[] chdOffset = null;
+        if (node instanceof PVLNonLeafNode) {
+            chdOffset = new long[n];
+            for (int i = 0; i < n; ++i) {
+                chdOffset[i] = writeNode(node.child(i), out, pos);
+            }
+        }
+
+        long offset = pos[0];
+        out.writeByte(chdOffset == null ? 0 : 1);
+        out.writeInt(n);
+        out.writeDouble(node.model.getSlop());
+        out.writeDouble(node.model.getInter());
+        for (long k : node.keys) out.writeLong(k);
+        for (byte[] pie : node.pies) out.write(pie);
+        long len = 1 + 4 + 16 + (long) n * (8 + DigestEngine.LEN);
+        if (chdOffset != null) {
+            byte[] r = new byte[DigestEngine.LEN];
+            BigInteger[] chdRes = ((PVLNonLeafNode) node).chdRes;
+            for (BigInteger chdR : chdRes) {
+                DigestEngine.toFixedBytes(chdR, r, 0);
+                out.write(r);
+            }
+            for (long o : chdOffset) out.writeLong(o);
+            len += (long) n * (DigestEngine.LEN + 8);
+        }
+        pos[0] += len;
+        return offset;
+    }
+
+    public static PVLTree open(String path) throws IOException {
+        MappedFile file = new MappedFile(path);
+        if (file.size < HEADER || file.getLong(0) != MAGIC || file.getInt(8) != VERSION) {
+            file.close();
+            throw new IOException("not a PVLTree snapshot: " + path);
+        }
+        int err = file.getInt(12);
+        long rootOffset = file.getLong(16);
+        byte[] rootR = new byte[DigestEngine.LEN];
+        file.get(24, rootR);
+        PVLTree tree = new PVLTree(file.node(rootOffset), new BigInteger(1, rootR), err);
+        tree.mapped = file;
+        return tree;
+    }
+
+    static class MappedFile {
+        final long size;
+        final MappedByteBuffer[] regions;
+        volatile boolean closed;
+
+        MappedFile(String path) throws IOException {
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+                size = channel.size();
+                regions = new MappedByteBuffer[(int) ((size + REGION - 1) / REGION)];
+                for (int i = 0; i < regions.length; ++i) {
+                    long from = (long) i * REGION;
+                    regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(REGION, size - from));
+                }
+            }
+        }
+
+        byte getByte(long pos) {
+            return regions[(int) (pos / REGION)].get((int) (pos % REGION));
+        }
+
+        long getLong(long pos) {
+            int off = (int) (pos % REGION);
+            if (off <= REGION - 8)
+                return regions[(int) (pos / REGION)].getLong(off);
+            long v = 0;
+            for (int i = 0; i < 8; ++i) v = (v << 8) | (getByte(pos + i) & 0xff);
+            return v;
+        }
+
+        int getInt(long pos) {
+            int off = (int) (pos % REGION);
+            if (off <= REGION - 4)
+                return regions[(int) (pos / REGION)].getInt(off);
+            int v = 0;
+            for (int i = 0; i < 4; ++i) v = (v << 8) | (getByte(pos + i) & 0xff);
+            return v;
+        }
+
+        void get(long pos, byte[] dst) {
+            for (int done = 0; done < dst.length; ) {
+                MappedByteBuffer region = regions[(int) ((pos + done) / REGION)];
+                int off = (int) ((pos + done) % REGION);
+                int n = Math.min(dst.length - done, region.limit() - off);
+                region.get(off, dst, done, n);
+                done += n;
+            }
+        }
+
+        //release the mappings now instead of whenever the buffers are collected
+        void close() {
+            if (closed)
+                return;
+            closed = true;
+            for (MappedByteBuffer region : regions)
+                unmap(region);
+        }
+
+        static void unmap(ByteBuffer buffer) {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // no cleaner on this runtime, the mapping goes with the buffer
+            }
+        }
+
+        PVLNode node(long offset) {
+            if (closed)
+                throw new IllegalStateException("snapshot file is closed");
+            boolean isLeaf = getByte(offset) == 0;
+            int n = getInt(offset + 1);
+            Model model = new Model(Double.longBitsToDouble(getLong(offset + 5)), Double.longBitsToDouble(getLong(offset + 13)));
+            long p = offset + 21;
+            long[] keys = new long[n];
+            for (int i = 0; i < n; ++i, p += 8) keys[i] = getLong(p);
+            byte[][] pies = new byte[n][];
+            for (int i = 0; i < n; ++i, p += DigestEngine.LEN) {
+                pies[i] = new byte[DigestEngine.LEN];
+                get(p, pies[i]);
+            }
+
+            Segment segment = new Segment(model, keys);
+            if (isLeaf) {
+                PVLLeafNode leaf = new PVLLeafNode(segment);
+                leaf.pies = pies;
+                return leaf;
+            }
+
+            BigInteger[] chdRes = new BigInteger[n];
+            byte[] r = new byte[DigestEngine.LEN];
+            for (int i = 0; i < n; ++i, p += DigestEngine.LEN) {
+                get(p, r);
+                chdRes[i] = new BigInteger(1, r);
+            }
+            long[] chdOffset = new long[n];
+            for (int i = 0; i < n; ++i, p += 8) chdOffset[i] = getLong(p);
+            MappedNonLeafNode nonLeaf = new MappedNonLeafNode(segment, chdRes, this, chdOffset);
+            nonLeaf.pies = pies;
+            return nonLeaf;
+        }
+    }
+
+    static class MappedNonLeafNode extends PVLNonLeafNode {
+        private static final long serialVersionUID = 1L;
+
+        // chd slots are filled by whichever reader gets there first, published with release/acquire
+        static final VarHandle CHD = MethodHandles.arrayElementVarHandle(PVLNode[].class);
+        final transient MappedFile file;
+        final long[] chdOffset;
+
+        MappedNonLeafNode(Segment segment, BigInteger[] chdRes, MappedFile file, long[] chdOffset) {
+            super(segment, new PVLNode[chdOffset.length], chdRes);
+            this.file = file;
+            this.chdOffset = chdOffset;
+        }
+
+        @Override
+        public PVLNode child(int i) {
+            PVLNode c = (PVLNode) CHD.getAcquire(chd, i);
+            if (c == null) {
+                c = file.node(chdOffset[i]);
+                PVLNode raced = (PVLNode) CHD.compareAndExchangeRelease(chd, i, null, c);
+                if (raced != null)
+                    c = raced;
+            }
+            return c;
+        }
+    }
+}
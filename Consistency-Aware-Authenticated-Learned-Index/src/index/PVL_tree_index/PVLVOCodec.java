@@ -0,0 +1,265 @@
+package index.PVL_tree_index;
+
+import utils.DigestEngine;
+import utils.VOStream;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Binary VO codec for PVL_Res.
+VoInfo: flags(varint, bit0 = non leaf, bits1.. = pie count) n startPos endPos(varints) pies(raw 32 bytes)
+        non leaf: child count(varint), then per child r(32 bytes) and the child VoInfo
+PVL_Res: VoInfo, then result keys (count, zigzag deltas)
+MultiVoInfo: flags n(varints) run count(varint) runs(start, end varints) pies, children as for VoInfo
+PVLMulti_Res: MultiVoInfo, then result keys
+PVLLookup_Res: key(zigzag) flags(byte, bit0 found, bit1 pred, bit2 succ) height split(varints), pred path from level 0,
+               succ path from level split + 1 (from 0 without pred). Path: key(zigzag), per level n pos(varints)
+               pie[pos - 1] if pos > 0, pie[pos] and r except at the root
+ */
+public class PVLVOCodec {
+
+    public static byte[] encode(PVL_Res res) {
+        VOStream.Writer w = new VOStream.Writer((int) Math.min(encodedSize(res), Integer.MAX_VALUE));
+        write(res, w);
+        return w.toByteArray();
+    }
+
+    public static PVL_Res decode(byte[] bytes) {
+        return read(new VOStream.Reader(bytes));
+    }
+
+    public static void write(PVL_Res res, VOStream.Writer w) {
+        writeVo(res.node, w);
+        w.writeKeys(res.res);
+    }
+
+    public static PVL_Res read(VOStream.Reader r) {
+        VoInfo node = readVo(r);
+        return new PVL_Res(node, r.readKeys());
+    }
+
+    public static void writeVo(VoInfo vo, VOStream.Writer w) {
+        w.writeVarInt((vo.isLeafNode() ? 0 : 1) | (vo.voPies.size() << 1));
+        w.writeVarInt(vo.n);
+        w.writeVarInt(vo.startPos);
+        w.writeVarInt(vo.endPos);
+        for (byte[] pie : vo.voPies) w.writeBytes(pie);
+        if (!vo.isLeafNode()) {
+            byte[] r = new byte[DigestEngine.LEN];
+            w.writeVarInt(vo.chdNode.size());
+            for (int i = 0; i < vo.chdNode.size(); ++i) {
+                DigestEngine.toFixedBytes(vo.chdRes.get(i), r, 0);
+                w.writeBytes(r);
+                writeVo(vo.chdNode.get(i), w);
+            }
+        }
+    }
+
+    public static VoInfo readVo(VOStream.Reader r) {
+        return readVo(r, 0);
+    }
+
+    //depth counts the VO nodes above this one, across nested codecs
+    public static VoInfo readVo(VOStream.Reader r, int depth) {
+        VOStream.checkDepth(depth);
+        int flags = r.readVarInt32();
+        int n = r.readVarInt32();
+        int startPos = r.readVarInt32();
+        int endPos = r.readVarInt32();
+        VoInfo vo = new VoInfo(n, startPos, endPos);
+        for (int i = 0; i < flags >>> 1; ++i) vo.add(r.readBytes(DigestEngine.LEN));
+        if ((flags & 1) != 0) {
+            int chdNum = r.readCount();
+            vo.chdRes = new ArrayList<>(chdNum);
+            vo.chdNode = new ArrayList<>(chdNum);
+            for (int i = 0; i < chdNum; ++i) {
+                vo.chdRes.add(new BigInteger(1, r.readBytes(DigestEngine.LEN)));
+                vo.chdNode.add(readVo(r, depth + 1));
+            }
+        }
+        return vo;
+    }
+
+    //encoded size of the VO without the result keys, computed from the VoInfo without serializing it
+    public static long voSize(VoInfo vo) {
+        long sz = VOStream.varIntSize((vo.isLeafNode() ? 0 : 1) | (vo.voPies.size() << 1))
+                + VOStream.varIntSize(vo.n) + VOStream.varIntSize(vo.startPos) + VOStream.varIntSize(vo.endPos)
+                + (long) vo.voPies.size() * DigestEngine.LEN;
+        if (!vo.isLeafNode()) {
+            List<VoInfo> chdNode = vo.chdNode;
+            sz += VOStream.varIntSize(chdNode.size()) + (long) chdNode.size() * DigestEngine.LEN;
+            for (VoInfo chd : chdNode) sz += voSize(chd);
+        }
+        return sz;
+    }
+
+    public static long encodedSize(PVL_Res res) {
+        return voSize(res.node) + VOStream.keysSize(res.res);
+    }
+
+    public static byte[] encode(PVLMulti_Res res) {
+        VOStream.Writer w = new VOStream.Writer((int) Math.min(encodedSize(res), Integer.MAX_VALUE));
+        writeVo(res.node, w);
+        w.writeKeys(res.res);
+        return w.toByteArray();
+    }
+
+    public static PVLMulti_Res decodeMulti(byte[] bytes) {
+        VOStream.Reader r = new VOStream.Reader(bytes);
+        MultiVoInfo node = readMultiVo(r);
+        return new PVLMulti_Res(node, r.readKeys());
+    }
+
+    public static void writeVo(MultiVoInfo vo, VOStream.Writer w) {
+        w.writeVarInt((vo.isLeafNode() ? 0 : 1) | (vo.voPies.size() << 1));
+        w.writeVarInt(vo.n);
+        w.writeVarInt(vo.runCount());
+        for (int run : vo.runs) w.writeVarInt(run);
+        for (byte[] pie : vo.voPies) w.writeBytes(pie);
+        if (!vo.isLeafNode()) {
+            byte[] r = new byte[DigestEngine.LEN];
+            w.writeVarInt(vo.chdNode.size());
+            for (int i = 0; i < vo.chdNode.size(); ++i) {
+                DigestEngine.toFixedBytes(vo.chdRes.get(i), r, 0);
+                w.writeBytes(r);
+                writeVo(vo.chdNode.get(i), w);
+            }
+        }
+    }
+
+    public static MultiVoInfo readMultiVo(VOStream.Reader r) {
+        return readMultiVo(r, 0);
+    }
+
+    private static MultiVoInfo readMultiVo(VOStream.Reader r, int depth) {
+        VOStream.checkDepth(depth);
+        int flags = r.readVarInt32();
+        int n = r.readVarInt32();
+        int[] runs = new int[r.checkCount(2 * r.readCount())];
+        for (int i = 0; i < runs.length; ++i) runs[i] = r.readVarInt32();
+        MultiVoInfo vo = new MultiVoInfo(n, runs);
+        for (int i = 0; i < flags >>> 1; ++i) vo.voPies.add(r.readBytes(DigestEngine.LEN));
+        if ((flags & 1) != 0) {
+            int chdNum = r.readCount();
+            vo.chdRes = new ArrayList<>(chdNum);
+            vo.chdNode = new ArrayList<>(chdNum);
+            for (int i = 0; i < chdNum; ++i) {
+                vo.chdRes.add(new BigInteger(1, r.readBytes(DigestEngine.LEN)));
+                vo.chdNode.add(readMultiVo(r, depth + 1));
+            }
+        }
+        return vo;
+    }
+
+    public static long voSize(MultiVoInfo vo) {
+        long sz = VOStream.varIntSize((vo.isLeafNode() ? 0 : 1) | (vo.voPies.size() << 1))
+                + VOStream.varIntSize(vo.n) + VOStream.varIntSize(vo.runCount())
+                + (long) vo.voPies.size() * DigestEngine.LEN;
+        for (int run : vo.runs) sz += VOStream.varIntSize(run);
+        if (!vo.isLeafNode()) {
+            List<MultiVoInfo> chdNode = vo.chdNode;
+            sz += VOStream.varIntSize(chdNode.size()) + (long) chdNode.size() * DigestEngine.LEN;
+            for (MultiVoInfo chd : chdNode) sz += voSize(chd);
+        }
+        return sz;
+    }
+
+    public static long encodedSize(PVLMulti_Res res) {
+        return voSize(res.node) + VOStream.keysSize(res.res);
+    }
+
+    public static byte[] encode(PVLLookup_Res res) {
+        VOStream.Writer w = new VOStream.Writer((int) encodedSize(res));
+        write(res, w);
+        return w.toByteArray();
+    }
+
+    public static PVLLookup_Res decodeLookup(byte[] bytes) {
+        return readLookup(new VOStream.Reader(bytes));
+    }
+
+    public static void write(PVLLookup_Res res, VOStream.Writer w) {
+        PVLLookup_Res.Path any = res.pred != null ? res.pred : res.succ;
+        w.writeSignedVarInt(res.key);
+        w.writeByte((res.found ? 1 : 0) | (res.pred != null ? 2 : 0) | (res.succ != null ? 4 : 0));
+        w.writeVarInt(any.n.length);
+        w.writeVarInt(res.split);
+        if (res.pred != null)
+            writePath(res.pred, 0, w);
+        if (res.succ != null)
+            writePath(res.succ, succFrom(res), w);
+    }
+
+    public static PVLLookup_Res readLookup(VOStream.Reader r) {
+        PVLLookup_Res res = new PVLLookup_Res(r.readSignedVarInt());
+        int flags = r.readByte();
+        int height = r.readCount();
+        res.found = (flags & 1) != 0;
+        res.split = r.readVarInt32();
+        if ((flags & 2) != 0)
+            res.pred = readPath(height, 0, r);
+        if ((flags & 4) != 0)
+            res.succ = readPath(height, res.pred != null ? res.split + 1 : 0, r);
+        return res;
+    }
+
+    // succ shares the levels up to the split with pred
+    private static int succFrom(PVLLookup_Res res) {
+        return res.pred != null ? res.split + 1 : 0;
+    }
+
+    private static void writePath(PVLLookup_Res.Path path, int from, VOStream.Writer w) {
+        byte[] rBytes = new byte[DigestEngine.LEN];
+        w.writeSignedVarInt(path.key);
+        for (int l = from; l < path.n.length; ++l) {
+            w.writeVarInt(path.n[l]);
+            w.writeVarInt(path.pos[l]);
+            if (path.pos[l] > 0)
+                w.writeBytes(path.leftPies[l]);
+            w.writeBytes(path.rightPies[l]);
+            if (l > 0) {
+                DigestEngine.toFixedBytes(path.r[l], rBytes, 0);
+                w.writeBytes(rBytes);
+            }
+        }
+    }
+
+    private static PVLLookup_Res.Path readPath(int height, int from, VOStream.Reader r) {
+        PVLLookup_Res.Path path = new PVLLookup_Res.Path(height);
+        path.key = r.readSignedVarInt();
+        for (int l = from; l < height; ++l) {
+            path.n[l] = r.readVarInt32();
+            path.pos[l] = r.readVarInt32();
+            if (path.pos[l] > 0)
+                path.leftPies[l] = r.readBytes(DigestEngine.LEN);
+            path.rightPies[l] = r.readBytes(DigestEngine.LEN);
+            if (l > 0)
+                path.r[l] = new BigInteger(1, r.readBytes(DigestEngine.LEN));
+        }
+        return path;
+    }
+
+    public static long encodedSize(PVLLookup_Res res) {
+        PVLLookup_Res.Path any = res.pred != null ? res.pred : res.succ;
+        long sz = VOStream.signedVarIntSize(res.key) + 1 + VOStream.varIntSize(any.n.length) + VOStream.varIntSize(res.split);
+        if (res.pred != null)
+            sz += pathSize(res.pred, 0);
+        if (res.succ != null)
+            sz += pathSize(res.succ, succFrom(res));
+        return sz;
+    }
+
+    private static long pathSize(PVLLookup_Res.Path path, int from) {
+        long sz = VOStream.signedVarIntSize(path.key);
+        for (int l = from; l < path.n.length; ++l) {
+            sz += VOStream.varIntSize(path.n[l]) + VOStream.varIntSize(path.pos[l]) + DigestEngine.LEN;
+            if (path.pos[l] > 0)
+                sz += DigestEngine.LEN;
+            if (l > 0)
+                sz += DigestEngine.LEN;
+        }
+        return sz;
+    }
+}
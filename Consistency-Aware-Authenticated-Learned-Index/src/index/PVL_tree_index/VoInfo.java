@@ -1,5 +1,7 @@
 package index.PVL_tree_index;
 
+import utils.Footprint;
+
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -15,10 +17,34 @@ public class VoInfo implements Serializable {
     public List<BigInteger> chdRes;
     public List<VoInfo> chdNode;
 
+    public void footprint(Footprint fp) {
+        if (!fp.visit(this)) return;
+        fp.add(Footprint.VO_CACHES, Footprint.object(3, 12));
+        if (voPies != null) {
+            fp.addList(Footprint.VO_CACHES, voPies);
+            for (byte[] pie : voPies) fp.addShared(Footprint.VO_CACHES, pie);
+        }
+        if (chdRes != null) {
+            fp.addList(Footprint.VO_CACHES, chdRes);
+            for (BigInteger r : chdRes) fp.addShared(Footprint.VO_CACHES, r);
+        }
+        if (chdNode != null) {
+            fp.addList(Footprint.VO_CACHES, chdNode);
+            for (VoInfo chd : chdNode) chd.footprint(fp);
+        }
+    }
+
     public boolean isLeafNode() {
         return chdNode == null;
     }
 
+    public VoInfo(int n, int startPos, int endPos) {
+        this.n = n;
+        this.startPos = startPos;
+        this.endPos = endPos;
+        voPies = new ArrayList<>(2);
+    }
+
     public VoInfo(PVLNode node, int startPos) {
         this.n = node.keys.length;
         this.startPos = startPos;
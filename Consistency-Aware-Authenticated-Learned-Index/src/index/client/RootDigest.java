@@ -0,0 +1,101 @@
+package index.client;
+
+import index.PVLB_tree_index.PVLBTree;
+import index.PVL_tree_index.PVLTree;
+import utils.DigestEngine;
+import utils.VOStream;
+
+/*
+Root digests of one published version: one 32 byte digest per PVLB tree slot and a 36 byte one (root r, root
+key count) per PVL tree slot (null for an empty slot), and optionally the [min, max] key fences of every PVL slot, which let a level that
+misses the query range be answered without a proof. It is everything a client keeps to verify query results
+of that version.
+encoding: pvlbCount(varint) {present(byte) digest(32 bytes)}* pvlCount(varint) {present(byte) digest(36 bytes)}*
+          hasFences(byte) {min(signed varint) max(signed varint)}* per present PVL slot
+ */
+public class RootDigest {
+    final byte[][] pvlbRoots;
+    final byte[][] pvlRoots;
+    // min and max key of PVL slot i at 2i and 2i + 1, null without fences
+    final long[] pvlFences;
+
+    public RootDigest(byte[][] pvlbRoots, byte[][] pvlRoots) {
+        this(pvlbRoots, pvlRoots, null);
+    }
+
+    public RootDigest(byte[][] pvlbRoots, byte[][] pvlRoots, long[] pvlFences) {
+        this.pvlbRoots = pvlbRoots;
+        this.pvlRoots = pvlRoots;
+        this.pvlFences = pvlFences;
+    }
+
+    public static RootDigest of(PVLTree tree) {
+        return new RootDigest(new byte[0][], new byte[][]{tree.rootDigest()});
+    }
+
+    public static RootDigest of(PVLBTree tree) {
+        return new RootDigest(new byte[][]{tree.rootDigest()}, new byte[0][]);
+    }
+
+    public int getPVLBCount() {
+        return pvlbRoots.length;
+    }
+
+    public int getPVLCount() {
+        return pvlRoots.length;
+    }
+
+    //PVL slot i holds no key in [low, high]
+    boolean outsideFences(int i, long low, long high) {
+        return pvlFences != null && (high < pvlFences[2 * i] || low > pvlFences[2 * i + 1]);
+    }
+
+    public byte[] encode() {
+        VOStream.Writer out = new VOStream.Writer(3 + pvlbRoots.length * (DigestEngine.LEN + 1) + pvlRoots.length * (PVLTree.DIGEST_LEN + 21));
+        writeRoots(pvlbRoots, out);
+        writeRoots(pvlRoots, out);
+        out.writeByte(pvlFences == null ? 0 : 1);
+        if (pvlFences != null) {
+            for (int i = 0; i < pvlRoots.length; ++i) {
+                if (pvlRoots[i] == null) continue;
+                out.writeSignedVarInt(pvlFences[2 * i]);
+                out.writeSignedVarInt(pvlFences[2 * i + 1]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static RootDigest decode(byte[] bytes) {
+        VOStream.Reader in = new VOStream.Reader(bytes);
+        byte[][] pvlbRoots = readRoots(in, DigestEngine.LEN);
+        byte[][] pvlRoots = readRoots(in, PVLTree.DIGEST_LEN);
+        long[] pvlFences = null;
+        if (in.readByte() != 0) {
+            pvlFences = new long[2 * pvlRoots.length];
+            for (int i = 0; i < pvlRoots.length; ++i) {
+                if (pvlRoots[i] == null) continue;
+                pvlFences[2 * i] = in.readSignedVarInt();
+                pvlFences[2 * i + 1] = in.readSignedVarInt();
+            }
+        }
+        return new RootDigest(pvlbRoots, pvlRoots, pvlFences);
+    }
+
+    private static void writeRoots(byte[][] roots, VOStream.Writer out) {
+        out.writeVarInt(roots.length);
+        for (byte[] root : roots) {
+            out.writeByte(root == null ? 0 : 1);
+            if (root != null)
+                out.writeBytes(root);
+        }
+    }
+
+    private static byte[][] readRoots(VOStream.Reader in, int len) {
+        byte[][] roots = new byte[in.readCount()][];
+        for (int i = 0; i < roots.length; ++i) {
+            if (in.readByte() != 0)
+                roots[i] = in.readBytes(len);
+        }
+        return roots;
+    }
+}
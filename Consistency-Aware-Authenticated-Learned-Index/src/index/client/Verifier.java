@@ -0,0 +1,142 @@
+package index.client;
+
+import index.HPVL_tree_index.Contains_Res;
+import index.HPVL_tree_index.Res;
+import index.PVLB_tree_index.PVLBTree;
+import index.PVLB_tree_index.PVLB_Res;
+import index.PVL_tree_index.PVLBatchVerifier;
+import index.PVL_tree_index.PVLLookup_Res;
+import index.PVL_tree_index.PVLMulti_Res;
+import index.PVL_tree_index.PVLTree;
+import index.PVL_tree_index.PVL_Res;
+
+import java.util.concurrent.ForkJoinPool;
+
+/*
+Client side verification of query results against a RootDigest, without any copy of the index.
+Every tree slot of the digest must be answered by exactly one sub result (or, for a PVL level, by its fences),
+and each answer is checked for completeness against that slot's digest, which for a PVL tree binds the root
+r and the root key count.
+ */
+public class Verifier {
+
+    //range result of a single PVLTree
+    public static boolean verify(RootDigest digest, long low, long high, PVL_Res res) {
+        if (digest.pvlbRoots.length != 0 || digest.pvlRoots.length != 1 || digest.pvlRoots[0] == null || res == null)
+            return false;
+        return PVLTree.verify(PVLTree.digestR(digest.pvlRoots[0]), PVLTree.digestN(digest.pvlRoots[0]), low, high, res);
+    }
+
+    //range result of a single PVLTree for the one key [key, key]
+    public static boolean verify(RootDigest digest, long key, PVL_Res res) {
+        if (digest.pvlbRoots.length != 0 || digest.pvlRoots.length != 1 || digest.pvlRoots[0] == null || res == null)
+            return false;
+        return PVLTree.verify(PVLTree.digestR(digest.pvlRoots[0]), PVLTree.digestN(digest.pvlRoots[0]), key, res);
+    }
+
+    //point lookup proof of a single PVLTree
+    public static boolean verify(RootDigest digest, long key, PVLLookup_Res res) {
+        if (digest.pvlbRoots.length != 0 || digest.pvlRoots.length != 1 || digest.pvlRoots[0] == null || res == null)
+            return false;
+        return PVLTree.verify(PVLTree.digestR(digest.pvlRoots[0]), PVLTree.digestN(digest.pvlRoots[0]), key, res);
+    }
+
+    //merged result of a multi range query on a single PVLTree
+    public static boolean verify(RootDigest digest, long[] lows, long[] highs, PVLMulti_Res res) {
+        if (digest.pvlbRoots.length != 0 || digest.pvlRoots.length != 1 || digest.pvlRoots[0] == null || res == null)
+            return false;
+        return PVLTree.verify(PVLTree.digestR(digest.pvlRoots[0]), PVLTree.digestN(digest.pvlRoots[0]), lows, highs, res);
+    }
+
+    //many range results of a single PVLTree, upper level checks are shared across them
+    public static boolean[] verifyAll(RootDigest digest, long[] low, long[] high, PVL_Res[] res, ForkJoinPool pool) {
+        if (digest.pvlbRoots.length != 0 || digest.pvlRoots.length != 1 || digest.pvlRoots[0] == null)
+            return new boolean[res.length];
+        return new PVLBatchVerifier(digest.pvlRoots[0]).verifyAll(low, high, res, pool);
+    }
+
+    //range result of a single PVLBTree
+    public static boolean verify(RootDigest digest, long low, long high, PVLB_Res res) {
+        if (digest.pvlbRoots.length != 1 || digest.pvlRoots.length != 0 || digest.pvlbRoots[0] == null || res == null)
+            return false;
+        return PVLBTree.verify(digest.pvlbRoots[0], low, high, res);
+    }
+
+    //range result of one HPVLIndex version
+    public static boolean verify(RootDigest digest, long low, long high, Res res) {
+        PVLB_Res[] PVLB_res = res.getPVLBResults();
+        PVL_Res[] PVL_res = res.getPVLResults();
+        if (!sameSlots(digest.pvlbRoots, PVLB_res, null) || !sameSlots(digest.pvlRoots, PVL_res, res))
+            return false;
+
+        for (int i = 0; i < digest.pvlbRoots.length; ++i) {
+            if (digest.pvlbRoots[i] != null && !PVLBTree.verify(digest.pvlbRoots[i], low, high, PVLB_res[i]))
+                return false;
+        }
+
+        for (int i = 0; i < digest.pvlRoots.length; ++i) {
+            if (digest.pvlRoots[i] == null)
+                continue;
+            if (res.isFenced(i)) {
+                if (!digest.outsideFences(i, low, high))
+                    return false;
+            } else if (!PVLTree.verify(PVLTree.digestR(digest.pvlRoots[i]), PVLTree.digestN(digest.pvlRoots[i]), low, high, PVL_res[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    //membership proof of one HPVLIndex version: a hit needs one slot proving key, a miss every slot excluding it
+    public static boolean verify(RootDigest digest, long key, Contains_Res res) {
+        if (res == null || res.key != key)
+            return false;
+        PVLB_Res[] PVLB_res = res.getPVLBResults();
+        PVLLookup_Res[] PVL_res = res.getPVLResults();
+        if (PVLB_res.length != digest.pvlbRoots.length || PVL_res.length != digest.pvlRoots.length)
+            return false;
+
+        if (res.isFound()) {
+            for (int i = 0; i < PVLB_res.length; ++i) {
+                if (PVLB_res[i] != null && digest.pvlbRoots[i] != null)
+                    return PVLB_res[i].getResults().contains(key) && PVLBTree.verify(digest.pvlbRoots[i], key, key, PVLB_res[i]);
+            }
+            for (int i = 0; i < PVL_res.length; ++i) {
+                if (PVL_res[i] != null && digest.pvlRoots[i] != null)
+                    return PVL_res[i].isFound() && PVLTree.verify(PVLTree.digestR(digest.pvlRoots[i]), PVLTree.digestN(digest.pvlRoots[i]), key, PVL_res[i]);
+            }
+            return false;
+        }
+
+        for (int i = 0; i < PVLB_res.length; ++i) {
+            if (digest.pvlbRoots[i] == null)
+                continue;
+            if (PVLB_res[i] == null || PVLB_res[i].getResults().contains(key) || !PVLBTree.verify(digest.pvlbRoots[i], key, key, PVLB_res[i]))
+                return false;
+        }
+        for (int i = 0; i < PVL_res.length; ++i) {
+            if (digest.pvlRoots[i] == null)
+                continue;
+            if (res.isFenced(i)) {
+                if (!digest.outsideFences(i, key, key))
+                    return false;
+            } else if (PVL_res[i] == null || PVL_res[i].isFound() || !PVLTree.verify(PVLTree.digestR(digest.pvlRoots[i]), PVLTree.digestN(digest.pvlRoots[i]), key, PVL_res[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a result, or a fence answer for a PVL level, is present exactly where the digest has a tree
+    private static boolean sameSlots(byte[][] roots, Object[] res, Res fences) {
+        int n = res == null ? 0 : res.length;
+        for (int i = 0; i < Math.max(roots.length, n); ++i) {
+            boolean hasRoot = i < roots.length && roots[i] != null;
+            boolean hasRes = i < n && (res[i] != null || fences != null && fences.isFenced(i));
+            if (hasRoot != hasRes)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package index.learned_node_info;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+Parallel OptPLA over a sorted key array.
+The array is cut into chunks that are segmented concurrently. OptPLA is greedy, so a
+segment depends only on its start key and the keys it covers: every segment that closed
+inside its chunk is exactly the sequential one, only the last segment of each chunk is cut
+by the chunk end. Stitching re-fits from that segment start until a segment boundary lands
+on a boundary already found in a later chunk, after which that chunk is reused as is.
+The result equals new OptPLA(dataset, err).getSegments().
+ */
+public class ChunkedOptPLA {
+    // fewest keys worth a chunk of their own
+    private static volatile int minChunk = 1 << 16;
+
+    public static void setMinChunk(int keys) {
+        if (keys <= 0)
+            throw new IllegalArgumentException("chunk size must be positive: " + keys);
+        minChunk = keys;
+    }
+
+    public static Segment[] getSegments(long[] dataset, int err, ForkJoinPool pool) {
+        int n = dataset.length;
+        int chunkNum = pool == null ? 1 : Math.min(pool.getParallelism() * 4, n / minChunk);
+        if (chunkNum <= 1)
+            return new OptPLA(dataset, err).getSegments();
+
+        int[] chunkStart = new int[chunkNum + 1];
+        for (int c = 0; c <= chunkNum; ++c)
+            chunkStart[c] = (int) ((long) n * c / chunkNum);
+
+        List<ForkJoinTask<Segment[]>> tasks = new ArrayList<>(chunkNum);
+        for (int c = 0; c < chunkNum; ++c) {
+            int from = chunkStart[c], to = chunkStart[c + 1];
+            tasks.add(pool.submit(() -> new OptPLA(dataset, from, to, err).getSegments()));
+        }
+
+        Segment[][] chunkSegs = new Segment[chunkNum][];
+        int[][] segStart = new int[chunkNum][];
+        for (int c = 0; c < chunkNum; ++c) {
+            chunkSegs[c] = tasks.get(c).join();
+            segStart[c] = new int[chunkSegs[c].length];
+            int pos = chunkStart[c];
+            for (int s = 0; s < chunkSegs[c].length; ++s) {
+                segStart[c][s] = pos;
+                pos += chunkSegs[c][s].segData.length;
+            }
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        int p = 0, c = 0;
+        while (true) {
+            // p is the start of a sequential segment and is a segment start of chunk c
+            int idx = Arrays.binarySearch(segStart[c], p);
+            boolean lastChunk = c == chunkNum - 1;
+            int end = lastChunk ? chunkSegs[c].length : chunkSegs[c].length - 1;
+            segments.addAll(Arrays.asList(chunkSegs[c]).subList(idx, end));
+            if (lastChunk)
+                break;
+            p = segStart[c][end];
+
+            // re-fit across the chunk end until the boundaries meet again
+            OptPLA pla = new OptPLA(err);
+            int closed = 0;
+            int j = p;
+            for (; j < n; ++j) {
+                pla.addKey(dataset[j]);
+                if (pla.segmentList.size() > closed) {
+                    segments.add(pla.segmentList.get(closed++));
+                    int cj = chunkOf(chunkStart, j);
+                    int sj = Arrays.binarySearch(segStart[cj], j);
+                    if (sj >= 0 && (sj < segStart[cj].length - 1 || cj == chunkNum - 1)) {
+                        p = j;
+                        c = cj;
+                        break;
+                    }
+                }
+            }
+            if (j == n) {
+                pla.stop();
+                segments.addAll(pla.segmentList.subList(closed, pla.segmentList.size()));
+                break;
+            }
+        }
+        return segments.toArray(new Segment[segments.size()]);
+    }
+
+    static int chunkOf(int[] chunkStart, int pos) {
+        int c = Arrays.binarySearch(chunkStart, pos);
+        return c >= 0 ? Math.min(c, chunkStart.length - 2) : -c - 2;
+    }
+}
@@ -11,6 +11,14 @@ public class Model {
         this.inter = inter;
     }
 
+    public double getSlop() {
+        return slop;
+    }
+
+    public double getInter() {
+        return inter;
+    }
+
     public int find(long tar) {
         return  (int) (slop * (tar - inter));
     }
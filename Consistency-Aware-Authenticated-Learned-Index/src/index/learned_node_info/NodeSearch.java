@@ -0,0 +1,140 @@
+package index.learned_node_info;
+
+import utils.Utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+Last-mile search inside a learned node: the largest index in [pos - err, pos + err] whose key is <= tar,
+or pos - err - 1 (clamped) when there is none. Every strategy returns the same index.
+BINARY       textbook binary search over the window
+BRANCH_FREE  binary search whose step is a conditional move instead of a branch
+EXPONENTIAL  gallops outward from the prediction, cheap when the model is much closer than err
+LINEAR       counts keys <= tar over the window, no data dependent branch, for small windows
+ADAPTIVE     LINEAR for windows up to linearWindow keys, EXPONENTIAL otherwise
+ */
+public class NodeSearch {
+    public static final int BINARY = 0;
+    public static final int BRANCH_FREE = 1;
+    public static final int EXPONENTIAL = 2;
+    public static final int LINEAR = 3;
+    public static final int ADAPTIVE = 4;
+
+    static int strategy = ADAPTIVE;
+    static int linearWindow = 32;
+
+    public static void setStrategy(int strategy, int linearWindow) {
+        NodeSearch.strategy = strategy;
+        NodeSearch.linearWindow = linearWindow;
+    }
+
+    public static int getStrategy() {
+        return strategy;
+    }
+
+    //search keys around the predicted position pos
+    public static int findLeftBound(long[] keys, long tar, int pos, int err) {
+        if (pos - err >= keys.length) return keys.length - 1;
+        int l = Math.max(0, pos - err);
+        int r = Math.min(keys.length - 1, pos + err);
+        return findLeftBound(keys, tar, pos, l, r, strategy);
+    }
+
+    public static int findLeftBound(long[] keys, long tar, int pos, int l, int r, int strategy) {
+        switch (strategy) {
+            case BRANCH_FREE:
+                return branchFree(keys, tar, l, r);
+            case EXPONENTIAL:
+                return exponential(keys, tar, pos, l, r);
+            case LINEAR:
+                return linear(keys, tar, l, r);
+            case ADAPTIVE:
+                return r - l < linearWindow ? linear(keys, tar, l, r) : exponential(keys, tar, pos, l, r);
+            default:
+                return Utils.findLeftBound(keys, tar, l, r);
+        }
+    }
+
+    static int branchFree(long[] keys, long tar, int l, int r) {
+        int n = r - l + 1;
+        if (n <= 0) return l - 1;
+        int base = l;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = keys[base + half] <= tar ? base + half : base;
+            n -= half;
+        }
+        return keys[base] <= tar ? base : base - 1;
+    }
+
+    static int exponential(long[] keys, long tar, int pos, int l, int r) {
+        if (l > r) return l - 1;
+        int p = Math.min(Math.max(pos, l), r);
+        int bound = 1;
+        if (keys[p] <= tar) {
+            while (p + bound <= r && keys[p + bound] <= tar) bound <<= 1;
+            return branchFree(keys, tar, p + (bound >>> 1), Math.min(p + bound - 1, r));
+        }
+        while (p - bound >= l && keys[p - bound] > tar) bound <<= 1;
+        return branchFree(keys, tar, Math.max(p - bound, l), p - (bound >>> 1) - 1);
+    }
+
+    static int linear(long[] keys, long tar, int l, int r) {
+        int c = 0;
+        for (int i = l; i <= r; ++i)
+            c += keys[i] <= tar ? 1 : 0;
+        return l + c - 1;
+    }
+
+    //per-level search cost of each strategy on a real node layout: args = [n] [err] [queries]
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int[] errs = args.length > 1 ? new int[]{Integer.parseInt(args[1])} : new int[]{8, 16, 32, 64, 128, 256};
+        int q = args.length > 2 ? Integer.parseInt(args[2]) : 2000000;
+        String[] names = {"binary", "branch-free", "exponential", "linear", "adaptive"};
+        long[] data = Utils.buildRandArr(n, 1, (long) n * 1000, null);
+        Arrays.sort(data);
+        Random rnd = new Random(7);
+
+        for (int err : errs) {
+            OptPLA pla = new OptPLA(data, err);
+            Segment[] segs = pla.getSegments();
+            long[] firsts = new long[segs.length];
+            for (int i = 0; i < segs.length; ++i) firsts[i] = segs[i].segData[0];
+            // half existing keys, half random probes, routed to their segment outside the timed loop
+            long[] tars = new long[q];
+            int[] segOf = new int[q];
+            int[] preds = new int[q];
+            for (int i = 0; i < q; ++i) {
+                tars[i] = (i & 1) == 0 ? data[rnd.nextInt(n)] : data[0] + (long) (rnd.nextDouble() * (data[n - 1] - data[0]));
+                segOf[i] = Math.max(0, Utils.findLeftBound(firsts, tars[i], 0, firsts.length - 1));
+                preds[i] = segs[segOf[i]].model.find(tars[i]);
+            }
+
+            long[] expect = null;
+            System.out.printf("n=%d err=%d segments=%d%n", n, err, segs.length);
+            for (int s = BINARY; s <= ADAPTIVE; ++s) {
+                long[] got = new long[q];
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < 5; ++round) {
+                    long sink = 0;
+                    long start = System.nanoTime();
+                    for (int i = 0; i < q; ++i) {
+                        long[] keys = segs[segOf[i]].segData;
+                        int pos = preds[i];
+                        int res;
+                        if (pos - err >= keys.length) res = keys.length - 1;
+                        else res = findLeftBound(keys, tars[i], pos, Math.max(0, pos - err), Math.min(keys.length - 1, pos + err), s);
+                        sink += res;
+                        got[i] = res;
+                    }
+                    best = Math.min(best, System.nanoTime() - start);
+                    if (sink == 42) System.out.print("");
+                }
+                if (expect == null) expect = got;
+                System.out.printf("  %-12s %6.1f ns/search %s%n", names[s], best / (double) q, Arrays.equals(expect, got) ? "" : "MISMATCH");
+            }
+        }
+    }
+}
@@ -4,34 +4,37 @@ import utils.Utils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 
 public class OptPLA {
     List<Segment> segmentList = new ArrayList<>();
-    List<long[]> lower;
-    List<long[]> upper;
+    // convex hulls as growable primitive point arrays
+    long[] upperX, upperY, lowerX, lowerY;
+    int upperSize = 0;
+    int lowerSize = 0;
     int upperStart = 0;
     int lowerStart = 0;
-    long firstX;
     int err;
-    List<Long> segDataList;
-    long[][] rectangle = new long[4][2];
+    long[] segData;
+    int segSize = 0;
+    // rectangle points 0..3
+    long r0x, r0y, r1x, r1y, r2x, r2y, r3x, r3y;
 
     private void clear() {
-        lower.clear();
-        upper.clear();
+        lowerSize = 0;
+        upperSize = 0;
         lowerStart = 0;
         upperStart = 0;
-        rectangle = new long[4][2];
-        segDataList = new ArrayList<>();
+        segSize = 0;
     }
 
     public OptPLA(int err) {
         this.err = err;
-        lower = new ArrayList<>();
-        upper = new ArrayList<>();
-        segDataList = new ArrayList<>();
+        upperX = new long[16];
+        upperY = new long[16];
+        lowerX = new long[16];
+        lowerY = new long[16];
+        segData = new long[16];
     }
 
     public void stop() {
@@ -39,17 +42,20 @@ public class OptPLA {
     }
 
     public OptPLA(long[] dataset, int err) {
-        this.err = err;
-        lower = new ArrayList<>();
-        upper = new ArrayList<>();
-        segDataList = new ArrayList<>();
-        for (long data : dataset) {
-            addKey(data);
+        this(dataset, 0, dataset.length, err);
+    }
+
+    //segment dataset[from, to)
+    public OptPLA(long[] dataset, int from, int to, int err) {
+        this(err);
+        for (int i = from; i < to; ++i) {
+            addKey(dataset[i]);
         }
         this.stop();
     }
-    double getSlop(long[] p1, long[] p2) {
-        return ((double) (p2[1] - p1[1])) / (p2[0] - p1[0]);
+
+    static double getSlop(long x1, long y1, long x2, long y2) {
+        return ((double) (y2 - y1)) / (x2 - x1);
     }
 
     public Segment[] getSegments() {
@@ -57,111 +63,130 @@ public class OptPLA {
     }
 
     public void addRegToSegments() {
-        double[] slopAndIntercept = getSlopAndIntercept();
-        Model model = new Model(slopAndIntercept[0], slopAndIntercept[1]);
-        segmentList.add(new Segment(model, segDataList.stream().mapToLong(Long::longValue).toArray()));
+        Model model;
+        if (segSize == 1) {
+            model = new Model(0, (r0y + r1y) / 2.0);
+        } else {
+            double intercept, slop;
+            double slop1 = getSlop(r2x, r2y, r0x, r0y);
+            double slop2 = getSlop(r3x, r3y, r1x, r1y);
+
+            slop = (slop1 + slop2) / 2;
+            if (slop1 == slop2)
+                intercept = r0x - r0y / slop;
+            else {
+                double tmp = slop2 - slop1;
+                double x0 = (r0y - slop1 * r0x + slop2 * r1x - r1y) / tmp;
+                double y0 = (slop1 * slop2 * (r1x - r0x) + r0y * slop2 - r1y * slop1) / tmp;
+                intercept = x0 - y0 / slop;
+            }
+            model = new Model(slop, intercept);
+        }
+        segmentList.add(new Segment(model, Arrays.copyOf(segData, segSize)));
         this.clear();
     }
 
-    double[] getSlopAndIntercept() {
-        if (segDataList.size() == 1) {
-            return new double[] {0, (rectangle[0][1] + rectangle[1][1]) / 2.0};
+    // cross(O, A, B) over hull points
+    static double cross(long ox, long oy, long ax, long ay, long bx, long by) {
+        return getSlop(bx, by, ox, oy) - getSlop(ax, ay, ox, oy);
+    }
+
+    private void pushUpper(long x, long y) {
+        if (upperSize == upperX.length) {
+            upperX = Arrays.copyOf(upperX, upperSize * 2);
+            upperY = Arrays.copyOf(upperY, upperSize * 2);
         }
-        double intercept, slop;
-        double slop1 = getSlop(rectangle[2], rectangle[0]);
-        double slop2 = getSlop(rectangle[3], rectangle[1]);
-
-
-        slop = (slop1 + slop2) / 2;
-        if (slop1 == slop2)
-            intercept = rectangle[0][0] - rectangle[0][1] / slop;
-        else {
-            double tmp = slop2 - slop1;
-            double x0 = (rectangle[0][1] - slop1 * rectangle[0][0] + slop2 * rectangle[1][0] - rectangle[1][1]) / tmp;
-            double y0 = (slop1 * slop2 * (rectangle[1][0] - rectangle[0][0]) + rectangle[0][1] * slop2 - rectangle[1][1] * slop1) / tmp;
-            intercept = x0 - y0 / slop;
+        upperX[upperSize] = x;
+        upperY[upperSize++] = y;
+    }
+
+    private void pushLower(long x, long y) {
+        if (lowerSize == lowerX.length) {
+            lowerX = Arrays.copyOf(lowerX, lowerSize * 2);
+            lowerY = Arrays.copyOf(lowerY, lowerSize * 2);
         }
-        return new double[]{slop, intercept};
+        lowerX[lowerSize] = x;
+        lowerY[lowerSize++] = y;
     }
 
-    double cross(long[] pointO, long[] pointA, long[] pointB) {
-        return getSlop(pointB, pointO) - getSlop(pointA, pointO);
+    private void pushKey(long key) {
+        if (segSize == segData.length)
+            segData = Arrays.copyOf(segData, segSize * 2);
+        segData[segSize++] = key;
     }
 
     public void addKey(long key) {
-        long x = key, y = segDataList.size();
-        long[] p1 = new long[]{x, y + err};
-        long[] p2 = new long[]{x, y - err};
-
-        if (segDataList.size() == 0) {
-            firstX = x;
-            rectangle[0] = p1;
-            rectangle[1] = p2;
-            lower.clear();
-            upper.add(p1);
-            lower.add(p2);
-            segDataList.add(key);
+        long x = key, y = segSize;
+        // p1 = (x, y + err), p2 = (x, y - err)
+        long y1 = y + err, y2 = y - err;
+
+        if (segSize == 0) {
+            r0x = x; r0y = y1;
+            r1x = x; r1y = y2;
+            pushUpper(x, y1);
+            pushLower(x, y2);
+            pushKey(key);
             return;
         }
-        if (segDataList.size() == 1) {
-            rectangle[2] = p2;
-            rectangle[3] = p1;
-            upper.add(p1);
-            lower.add(p2);
-            segDataList.add(key);
+        if (segSize == 1) {
+            r2x = x; r2y = y2;
+            r3x = x; r3y = y1;
+            pushUpper(x, y1);
+            pushLower(x, y2);
+            pushKey(key);
             return;
         }
 
-        double slope1 = getSlop(rectangle[2], rectangle[0]);
-        double slope2 = getSlop(rectangle[3], rectangle[1]);
-        if (getSlop(p1, rectangle[2]) < slope1 || getSlop(p2, rectangle[3]) > slope2) {
+        double slope1 = getSlop(r2x, r2y, r0x, r0y);
+        double slope2 = getSlop(r3x, r3y, r1x, r1y);
+        if (getSlop(x, y1, r2x, r2y) < slope1 || getSlop(x, y2, r3x, r3y) > slope2) {
             addRegToSegments();
             addKey(key);
             return;
         }
 
-        if (getSlop(p1, rectangle[1]) < slope2) {
-            double min = getSlop(lower.get(lowerStart), p1);
+        if (getSlop(x, y1, r1x, r1y) < slope2) {
+            double min = getSlop(lowerX[lowerStart], lowerY[lowerStart], x, y1);
             int min_i = lowerStart;
-            for (int i = lowerStart + 1; i < lower.size(); ++i) {
-                double val = getSlop(lower.get(i), p1);
+            for (int i = lowerStart + 1; i < lowerSize; ++i) {
+                double val = getSlop(lowerX[i], lowerY[i], x, y1);
                 if (val > min) break;
                 min = val;
                 min_i = i;
             }
 
-            rectangle[1] = lower.get(min_i);
-            rectangle[3] = p1;
+            r1x = lowerX[min_i]; r1y = lowerY[min_i];
+            r3x = x; r3y = y1;
             lowerStart = min_i;
 
-            int end = upper.size();
-            for (; end >= upperStart + 2 && cross(upper.get(end - 2), upper.get(end - 1), p1) <= 0; --end) {
-                upper.remove(end - 1);
+            int end = upperSize;
+            for (; end >= upperStart + 2 && cross(upperX[end - 2], upperY[end - 2], upperX[end - 1], upperY[end - 1], x, y1) <= 0; --end) {
+                upperSize = end - 1;
             }
-            upper.add(p1);
+            pushUpper(x, y1);
         }
 
-        if (getSlop(p2, rectangle[0]) > slope1) {
-            double max = getSlop(upper.get(upperStart), p2);
+        if (getSlop(x, y2, r0x, r0y) > slope1) {
+            double max = getSlop(upperX[upperStart], upperY[upperStart], x, y2);
             int max_i = upperStart;
-            for (int i = upperStart + 1; i < upper.size(); ++i) {
-                double val = getSlop(upper.get(i), p2);
+            for (int i = upperStart + 1; i < upperSize; ++i) {
+                double val = getSlop(upperX[i], upperY[i], x, y2);
                 if (val < max) break;
                 max = val;
                 max_i = i;
             }
 
-            rectangle[0] = upper.get(max_i);
-            rectangle[2] = p2;
+            r0x = upperX[max_i]; r0y = upperY[max_i];
+            r2x = x; r2y = y2;
             upperStart = max_i;
 
-            int end = lower.size();
-            for (; end >= lowerStart + 2 && cross(lower.get(end - 2), lower.get(end - 1), p2) >= 0; --end) {
-                lower.remove(end - 1);
+            int end = lowerSize;
+            for (; end >= lowerStart + 2 && cross(lowerX[end - 2], lowerY[end - 2], lowerX[end - 1], lowerY[end - 1], x, y2) >= 0; --end) {
+                lowerSize = end - 1;
             }
-            lower.add(p2);
+            pushLower(x, y2);
         }
-        segDataList.add(key);
+        pushKey(key);
     }
 
     public static void main(String[] args) {
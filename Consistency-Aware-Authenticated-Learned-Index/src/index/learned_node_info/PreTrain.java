@@ -4,9 +4,23 @@ import utils.Utils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PreTrain {
+    // sampled optimiser: chunks of consecutive keys taken evenly over the data, and the cost of one tree level
+    // in key comparisons (node fetch, pie check) next to the log2(2 err + 1) of its window search
+    static int sampleChunks = 32;
+    static int chunkLen = 1 << 15;
+    static double levelCost = 8;
+    static int maxErr = 1 << 14;
+
+    public static void setSampling(int sampleChunks, int chunkLen, double levelCost) {
+        PreTrain.sampleChunks = sampleChunks;
+        PreTrain.chunkLen = chunkLen;
+        PreTrain.levelCost = levelCost;
+    }
 
     public static long[] uniformSelection(long[] sortedArray, int n) {
         long[] selectedNumbers = new long[n];
@@ -66,14 +80,108 @@ public class PreTrain {
         }
     }
 
+    /*
+    Keys per segment as a function of err, measured on a sample and reused for every tree size.
+    The sample is sampleChunks runs of chunkLen consecutive keys, so local density, and with it the
+    segmentation, is kept for any err; each chunk cut adds about half a segment, which is taken off again.
+     */
+    public static class SegmentCurve {
+        final long[] dataset;
+        final int[] chunkFrom;
+        final int len;
+        final Map<Integer, Double> keysPerSegment = new HashMap<>();
+
+        public SegmentCurve(long[] sortedKeys) {
+            dataset = sortedKeys;
+            int chunks = sortedKeys.length <= (long) sampleChunks * chunkLen ? 1 : sampleChunks;
+            len = chunks == 1 ? sortedKeys.length : chunkLen;
+            chunkFrom = new int[chunks];
+            for (int c = 0; c < chunks; ++c)
+                chunkFrom[c] = (int) ((long) (sortedKeys.length - len) * c / Math.max(1, chunks - 1));
+        }
+
+        public double keysPerSegment(int err) {
+            Double r = keysPerSegment.get(err);
+            if (r == null) {
+                double segments = 0;
+                for (int from : chunkFrom)
+                    segments += new OptPLA(dataset, from, from + len, err).segmentList.size();
+                if (chunkFrom.length > 1)
+                    segments = Math.max(1, segments - chunkFrom.length / 2.0);
+                r = Math.max(2.0, (double) len * chunkFrom.length / segments);
+                keysPerSegment.put(err, r);
+            }
+            return r;
+        }
+
+        // a chunk holding only a few segments says little about this err
+        boolean resolves(int err) {
+            return chunkFrom.length == 1 || keysPerSegment(err) * 8 <= len;
+        }
+
+        //estimated comparisons of one root to leaf search in a PVLTree of n keys built with err
+        public double cost(long n, int err) {
+            double height = Math.max(1, Math.log(n) / Math.log(keysPerSegment(err)));
+            return height * (levelCost + Math.log(2 * err + 1) / Math.log(2));
+        }
+
+        //err with the lowest cost for n keys: gallop up while the cost falls, then binary search the last step
+        public int bestErr(long n) {
+            int err = 1;
+            while (err * 2 <= maxErr && resolves(err * 2) && cost(n, err * 2) < cost(n, err))
+                err *= 2;
+            int l = Math.max(1, err / 2), r = Math.min(maxErr, err * 2);
+            while (l < r) {
+                int m = (l + r) >>> 1;
+                if (!resolves(m + 1) || cost(n, m) <= cost(n, m + 1)) r = m;
+                else l = m + 1;
+            }
+            return l;
+        }
+
+        public int evaluatedErrs() {
+            return keysPerSegment.size();
+        }
+    }
+
+    //err for a PVLTree over sortedKeys
+    public static int recommendErr(long[] sortedKeys) {
+        return new SegmentCurve(sortedKeys).bestErr(sortedKeys.length);
+    }
+
+    //err per HPVL level of levelSizes[i] keys, all from one sample of sortedKeys
+    public static int[] recommendLevelErrs(long[] sortedKeys, long[] levelSizes) {
+        SegmentCurve curve = new SegmentCurve(sortedKeys);
+        int[] errs = new int[levelSizes.length];
+        for (int i = 0; i < levelSizes.length; ++i)
+            errs[i] = curve.bestErr(levelSizes[i]);
+        return errs;
+    }
+
+    //args = [n] [preTrain n]: sampled optimiser on n keys, the exhaustive preTrain on a small prefix for comparison
     public static void main(String[] args) {
-        long[] dataset = Utils.buildRandArr(1000, 1, 100000, null);
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int small = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long[] dataset = Utils.buildRandArr(n, 1, (long) n * 100, null);
         Arrays.sort(dataset);
 
-        int[] speed = new int[dataset.length];
-        int[] errs = new int[dataset.length];
-
-        preTrain(dataset, speed, errs);
+        long s = System.nanoTime();
+        SegmentCurve curve = new SegmentCurve(dataset);
+        int err = curve.bestErr(n);
+        long e = System.nanoTime();
+        System.out.printf("sampled: n=%d err=%d (%d errs evaluated) %.2fs%n", n, err, curve.evaluatedErrs(), (e - s) / 1e9);
+
+        long[] levelSizes = new long[20];
+        for (int i = 0; i < levelSizes.length; ++i) levelSizes[i] = 2000L << i;
+        System.out.println("level errs: " + Arrays.toString(recommendLevelErrs(dataset, levelSizes)));
+
+        long[] prefix = Arrays.copyOf(dataset, Math.min(small, n));
+        int[] speed = new int[prefix.length];
+        int[] errs = new int[prefix.length];
+        s = System.nanoTime();
+        preTrain(prefix, speed, errs);
+        e = System.nanoTime();
+        System.out.printf("preTrain: n=%d err=%d %.2fs%n", prefix.length, errs[prefix.length - 1], (e - s) / 1e9);
     }
 
 }
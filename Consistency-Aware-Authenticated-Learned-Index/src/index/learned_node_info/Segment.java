@@ -1,7 +1,5 @@
 package index.learned_node_info;
 
-import utils.Utils;
-
 public class Segment {
     public Model model;
     public long[] segData;
@@ -31,10 +29,7 @@ public class Segment {
     }
 
     public int findLeftBound(long tar, int err) {
-        int pos = model.find(tar);
-        int l = Math.max(0, pos - err);
-        int r = Math.min(segData.length - 1, pos + err);
-        return Utils.findLeftBound(segData, tar, l, r);
+        return NodeSearch.findLeftBound(segData, tar, model.find(tar), err);
     }
 
 }
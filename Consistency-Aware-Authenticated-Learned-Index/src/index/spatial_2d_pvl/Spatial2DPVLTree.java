@@ -1,5 +1,7 @@
 package index.spatial_2d_pvl;
 
+import index.PVL_tree_index.PVLBatchVerifier;
+import index.PVL_tree_index.PVLMulti_Res;
 import index.PVL_tree_index.PVLTree;
 import index.PVL_tree_index.PVL_Res;
 import utils.*;
@@ -48,8 +50,40 @@ public class Spatial2DPVLTree {
         List<ZOrderDecomposition.ZInterval> intervals = 
             ZOrderDecomposition.decomposeQuery(qStart, qEnd);
         
-        // 使用并行查询(每个区间独立,利用多核)
-        return rectangleQueryParallel(queryRect, intervals);
+        // 一次遍历查询所有Z区间, 共享上层节点, 生成一个合并的VO
+        return rectangleQueryMerged(intervals);
+    }
+    
+    /**
+     * 逐区间查询 - 每个Z区间独立生成VO
+     */
+    public Spatial2DPVL_Res rectangleQueryPerInterval(Rectangle2D queryRect) {
+        Point2D qStart = new Point2D(queryRect.minX, queryRect.minY);
+        Point2D qEnd = new Point2D(queryRect.maxX, queryRect.maxY);
+        return rectangleQueryParallel(queryRect, ZOrderDecomposition.decomposeQuery(qStart, qEnd));
+    }
+    
+    /**
+     * 合并查询 - Z区间已按起点排序, 服务端一次自顶向下遍历
+     * 同样不过滤假阳性, 返回所有候选点
+     */
+    private Spatial2DPVL_Res rectangleQueryMerged(List<ZOrderDecomposition.ZInterval> intervals) {
+        long[] lows = new long[intervals.size()];
+        long[] highs = new long[intervals.size()];
+        for (int i = 0; i < intervals.size(); i++) {
+            lows[i] = intervals.get(i).start;
+            highs[i] = intervals.get(i).end;
+        }
+        PVLMulti_Res mergedResult = pvlTree.multiRangeQuery(lows, highs);
+        
+        List<Point2D> candidatePoints = new ArrayList<>();
+        for (Long zValue : mergedResult.getResults()) {
+            Point2D point = zToPoint.get(zValue);
+            if (point != null) {
+                candidatePoints.add(point);
+            }
+        }
+        return new Spatial2DPVL_Res(candidatePoints, mergedResult, intervals);
     }
     
     /**
@@ -104,19 +138,25 @@ public class Spatial2DPVLTree {
             intervals = ZOrderDecomposition.decomposeQuery(qStart, qEnd);
         }
         
+        if (response.mergedResult != null) {
+            return verifyMerged(intervals, response);
+        }
+        
         if (intervals.size() != response.intervalResults.size()) {
             return false;
         }
         
         // 🎯 关键改进：验证候选点的完整性，而不是过滤后的结果
         Set<Point2D> reconstructedCandidates = new HashSet<>();
+        // 所有区间共享上层节点的验证
+        PVLBatchVerifier batchVerifier = pvlTree.batchVerifier();
         
         for (int i = 0; i < intervals.size(); i++) {
             ZOrderDecomposition.ZInterval interval = intervals.get(i);
             Spatial2DPVLQueryResult intervalResult = response.intervalResults.get(i);
             
             // 验证PVL树的查询结果
-            boolean isValid = pvlTree.verify(interval.start, interval.end, intervalResult.pvlResult);
+            boolean isValid = batchVerifier.verify(interval.start, interval.end, intervalResult.pvlResult);
             if (!isValid) {
                 return false;
             }
@@ -136,8 +176,36 @@ public class Spatial2DPVLTree {
         return reconstructedCandidates.equals(claimedCandidates);
     }
     
+    private boolean verifyMerged(List<ZOrderDecomposition.ZInterval> intervals, Spatial2DPVL_Res response) {
+        long[] lows = new long[intervals.size()];
+        long[] highs = new long[intervals.size()];
+        for (int i = 0; i < intervals.size(); i++) {
+            lows[i] = intervals.get(i).start;
+            highs[i] = intervals.get(i).end;
+        }
+        if (!pvlTree.verify(lows, highs, response.mergedResult)) {
+            return false;
+        }
+        
+        Set<Point2D> reconstructedCandidates = new HashSet<>();
+        for (Long zValue : response.mergedResult.getResults()) {
+            Point2D point = zToPoint.get(zValue);
+            if (point != null) {
+                reconstructedCandidates.add(point);
+            }
+        }
+        return reconstructedCandidates.equals(new HashSet<>(response.results));
+    }
+    
+    public void footprint(Footprint fp) {
+        pvlTree.footprint(fp);
+        fp.addMap(zToPoint, Footprint.object(0, 24));
+    }
+
     public void printIndexSize() {
-        pvlTree.getIndexSize();
+        Footprint fp = new Footprint();
+        footprint(fp);
+        System.out.println("索引大小: " + fp);
         System.out.println("Z-order映射表大小: " + zToPoint.size() + " 个条目");
     }
     
@@ -95,6 +95,11 @@ public class Spatial2DPVLTreeChain {
         System.out.println("  链长度: " + chain.length);
         System.out.println("  当前版本: " + currentVersion);
         System.out.println("  全局点映射: " + globalZToPoint.size() + " 个点");
+        Footprint fp = new Footprint();
+        for (Spatial2DPVLTree tree : chain)
+            if (tree != null) tree.footprint(fp);
+        fp.addMap(globalZToPoint, Footprint.object(0, 24));
+        System.out.println("  索引大小(共享节点只计一次): " + fp);
     }
 }
 
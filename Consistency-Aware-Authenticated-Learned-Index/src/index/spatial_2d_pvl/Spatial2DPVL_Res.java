@@ -1,5 +1,6 @@
 package index.spatial_2d_pvl;
 
+import index.PVL_tree_index.PVLMulti_Res;
 import utils.*;
 import java.util.*;
 
@@ -15,6 +16,7 @@ public class Spatial2DPVL_Res {
     public final List<Point2D> results;  // 候选点（含假阳性）
     public final List<Spatial2DPVLQueryResult> intervalResults;
     public final List<ZOrderDecomposition.ZInterval> zIntervals;  // 缓存Z区间,避免重复计算
+    public final PVLMulti_Res mergedResult;  // 合并查询: 所有Z区间共用一个VO, 此时intervalResults为空
     
     public Spatial2DPVL_Res(List<Point2D> results, 
                            List<Spatial2DPVLQueryResult> intervalResults) {
@@ -27,9 +29,26 @@ public class Spatial2DPVL_Res {
         this.results = results;
         this.intervalResults = intervalResults;
         this.zIntervals = zIntervals;
+        this.mergedResult = null;
+    }
+    
+    public Spatial2DPVL_Res(List<Point2D> results,
+                           PVLMulti_Res mergedResult,
+                           List<ZOrderDecomposition.ZInterval> zIntervals) {
+        this.results = results;
+        this.intervalResults = new ArrayList<>();
+        this.zIntervals = zIntervals;
+        this.mergedResult = mergedResult;
+    }
+    
+    public int getIntervalCount() {
+        return mergedResult != null ? zIntervals.size() : intervalResults.size();
     }
     
     public double getTotalVOSize() {
+        if (mergedResult != null) {
+            return mergedResult.getVOSize();
+        }
         double totalSize = 0;
         for (Spatial2DPVLQueryResult result : intervalResults) {
             totalSize += result.pvlResult.getVOSize();
@@ -38,7 +57,7 @@ public class Spatial2DPVL_Res {
     }
     
     public QueryStats getStats() {
-        int totalCandidates = 0;
+        int totalCandidates = mergedResult != null ? mergedResult.getResults().size() : 0;
         
         for (Spatial2DPVLQueryResult result : intervalResults) {
             totalCandidates += result.getCandidateCount();
@@ -50,7 +69,7 @@ public class Spatial2DPVL_Res {
             results.size(),        // 候选点数量（含假阳性）
             totalCandidates,       // 总候选点数量
             0,                     // 假阳性数量（服务端无法计算）
-            intervalResults.size(),
+            getIntervalCount(),
             getTotalVOSize()
         );
     }
@@ -64,7 +83,7 @@ public class Spatial2DPVL_Res {
             truePositiveCount,     // 真阳性数量（过滤后）
             totalCandidates,       // 候选点数量（含假阳性）
             falsePositiveCount,    // 假阳性数量
-            intervalResults.size(),
+            getIntervalCount(),
             getTotalVOSize()
         );
     }
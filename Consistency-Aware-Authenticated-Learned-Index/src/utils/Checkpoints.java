@@ -0,0 +1,137 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+The checkpoints one VersionHistory state publishes: version -> tree, versions ascending, cut into blocks of at
+most BLOCK entries. Like VersionRing, a change copies the block index and only the blocks it touches, the others
+are shared with the map it came from; so a map handed to readers never changes, and an offer or a prune of the
+oldest versions costs size / BLOCK + BLOCK, not a copy of every checkpoint.
+ */
+public final class Checkpoints<T> {
+    static final int BLOCK = 64;
+    private static final Checkpoints<?> EMPTY = new Checkpoints<>(new int[0][], new Object[0][], 0);
+    final int[][] versions;
+    final Object[][] trees;
+    final int size;
+
+    private Checkpoints(int[][] versions, Object[][] trees, int size) {
+        this.versions = versions;
+        this.trees = trees;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Checkpoints<T> empty() {
+        return (Checkpoints<T>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //the checkpoint of exactly this version, null when there is none
+    @SuppressWarnings("unchecked")
+    public T get(int version) {
+        int b = block(version);
+        if (b < 0)
+            return null;
+        int i = Arrays.binarySearch(versions[b], version);
+        return i < 0 ? null : (T) trees[b][i];
+    }
+
+    //newest version at or before version, null when there is none
+    public Integer floorVersion(int version) {
+        int b = block(version);
+        if (b < 0)
+            return null;
+        int i = Arrays.binarySearch(versions[b], version);
+        return versions[b][i < 0 ? -i - 2 : i];
+    }
+
+    //oldest first, a copy
+    @SuppressWarnings("unchecked")
+    public List<T> values() {
+        List<T> values = new ArrayList<>(size);
+        for (Object[] block : trees)
+            for (Object tree : block)
+                values.add((T) tree);
+        return values;
+    }
+
+    // last block starting at or before version, -1 when version precedes every checkpoint
+    private int block(int version) {
+        int lo = 0, hi = versions.length - 1, b = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (versions[mid][0] <= version) {
+                b = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return b;
+    }
+
+    //version is newer than every checkpoint here
+    Checkpoints<T> with(int version, T tree) {
+        int n = versions.length;
+        if (n > 0 && versions[n - 1].length < BLOCK) {
+            int[][] nextVersions = versions.clone();
+            Object[][] nextTrees = trees.clone();
+            int[] v = Arrays.copyOf(versions[n - 1], versions[n - 1].length + 1);
+            Object[] t = Arrays.copyOf(trees[n - 1], v.length);
+            v[v.length - 1] = version;
+            t[t.length - 1] = tree;
+            nextVersions[n - 1] = v;
+            nextTrees[n - 1] = t;
+            return new Checkpoints<>(nextVersions, nextTrees, size + 1);
+        }
+        int[][] nextVersions = Arrays.copyOf(versions, n + 1);
+        Object[][] nextTrees = Arrays.copyOf(trees, n + 1);
+        nextVersions[n] = new int[]{version};
+        nextTrees[n] = new Object[]{tree};
+        return new Checkpoints<>(nextVersions, nextTrees, size + 1);
+    }
+
+    //drop holds versions ascending; blocks left empty go, blocks without a dropped version are shared
+    Checkpoints<T> without(int[] drop) {
+        if (drop.length == 0)
+            return this;
+        List<int[]> nextVersions = new ArrayList<>(versions.length);
+        List<Object[]> nextTrees = new ArrayList<>(versions.length);
+        int d = 0, size = 0;
+        for (int b = 0; b < versions.length; ++b) {
+            int[] v = versions[b];
+            int from = d;
+            while (d < drop.length && drop[d] <= v[v.length - 1])
+                d++;
+            int[] keptVersions = v;
+            Object[] keptTrees = trees[b];
+            if (d > from) {
+                keptVersions = new int[v.length];
+                keptTrees = new Object[v.length];
+                int k = 0;
+                for (int i = 0, j = from; i < v.length; ++i) {
+                    while (j < d && drop[j] < v[i])
+                        j++;
+                    if (j < d && drop[j] == v[i])
+                        continue;
+                    keptVersions[k] = v[i];
+                    keptTrees[k++] = trees[b][i];
+                }
+                if (k == 0)
+                    continue;
+                keptVersions = Arrays.copyOf(keptVersions, k);
+                keptTrees = Arrays.copyOf(keptTrees, k);
+            }
+            nextVersions.add(keptVersions);
+            nextTrees.add(keptTrees);
+            size += keptVersions.length;
+        }
+        return new Checkpoints<>(nextVersions.toArray(new int[0][]), nextTrees.toArray(new Object[0][]), size);
+    }
+}
@@ -0,0 +1,201 @@
+package utils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/*
+Binary SHA-256 engine for the authenticated indexes.
+Keys, positions and nonces are hashed straight from their primitive form (big-endian,
+fixed width), every thread reuses its own MessageDigest and scratch buffers, and the
+constant sk0 / sk1 / sk1||r prefixes are encoded once into a Prefix and replayed.
+ */
+public class DigestEngine {
+    public static final int LEN = 32;
+
+    private static final int BLOCK = 64;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static final Prefix EMPTY = new Prefix(null, new byte[0]);
+
+    // the two most recently encoded keys, so calls alternating between sk0 and sk1 both hit
+    private static volatile Prefix recent0 = EMPTY, recent1 = EMPTY;
+
+    static class Scratch {
+        final MessageDigest md = newDigest();
+        final byte[] buf = new byte[LEN + 8];
+        final byte[] out = new byte[LEN];
+        final byte[] rBytes = new byte[LEN];
+        final Random random = new Random();
+    }
+
+    // encoded constant prefix; prefixes spanning a full block also keep the compressed midstate
+    public static class Prefix {
+        final String sk;
+        final byte[] bytes;
+        final MessageDigest midstate;
+
+        Prefix(String sk, byte[] bytes) {
+            this.sk = sk;
+            this.bytes = bytes;
+            if (bytes.length >= BLOCK) {
+                midstate = newDigest();
+                midstate.update(bytes);
+            } else {
+                midstate = null;
+            }
+        }
+
+        //sk || r, the per-node prefix of the position hashes
+        public Prefix with(BigInteger r) {
+            byte[] ext = new byte[bytes.length + LEN];
+            System.arraycopy(bytes, 0, ext, 0, bytes.length);
+            toFixedBytes(r, ext, bytes.length);
+            return new Prefix(sk, ext);
+        }
+
+        MessageDigest begin(Scratch scratch) {
+            if (midstate != null) {
+                try {
+                    return (MessageDigest) midstate.clone();
+                } catch (CloneNotSupportedException e) {
+                    MessageDigest md = scratch.md;
+                    md.update(bytes);
+                    return md;
+                }
+            }
+            MessageDigest md = scratch.md;
+            md.update(bytes);
+            return md;
+        }
+    }
+
+    public static Prefix prefix(String sk) {
+        if (sk == null)
+            return EMPTY;
+        Prefix p = recent0;
+        if (sk.equals(p.sk))
+            return p;
+        p = recent1;
+        if (sk.equals(p.sk))
+            return p;
+        p = new Prefix(sk, sk.getBytes(StandardCharsets.UTF_8));
+        recent1 = recent0;
+        recent0 = p;
+        return p;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(SHA.KEY_SHA);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // H(prefix || key)
+    public static void hashKey(Prefix prefix, long key, byte[] out) {
+        Scratch s = SCRATCH.get();
+        MessageDigest md = prefix.begin(s);
+        putLong(s.buf, 0, key);
+        md.update(s.buf, 0, 8);
+        finish(md, out);
+    }
+
+    public static byte[] hashKey(Prefix prefix, long key) {
+        byte[] out = new byte[LEN];
+        hashKey(prefix, key, out);
+        return out;
+    }
+
+    // H(prefix || r || n), the entry of a child node in its parent
+    public static void hashChild(Prefix prefix, BigInteger r, int n, byte[] out) {
+        Scratch s = SCRATCH.get();
+        MessageDigest md = prefix.begin(s);
+        toFixedBytes(r, s.buf, 0);
+        putInt(s.buf, LEN, n);
+        md.update(s.buf, 0, LEN + 4);
+        finish(md, out);
+    }
+
+    // H(prefix || bytes)
+    public static void hashBytes(Prefix prefix, byte[] bytes, byte[] out) {
+        MessageDigest md = prefix.begin(SCRATCH.get());
+        md.update(bytes);
+        finish(md, out);
+    }
+
+    // H(h_0 || h_1 || ... ), the node hash of the MB tree
+    public static byte[] hashConcat(byte[][] hashes) {
+        MessageDigest md = SCRATCH.get().md;
+        for (byte[] h : hashes) md.update(h);
+        byte[] out = new byte[LEN];
+        finish(md, out);
+        return out;
+    }
+
+    // out = hash ^ H(prefix || pos), prefix is sk1 || r
+    public static void encPos(Prefix prefix, byte[] hash, int pos, byte[] out) {
+        Scratch s = SCRATCH.get();
+        MessageDigest md = prefix.begin(s);
+        putInt(s.buf, 0, pos);
+        md.update(s.buf, 0, 4);
+        finish(md, s.out);
+        for (int i = 0; i < LEN; ++i) {
+            out[i] = (byte) (hash[i] ^ s.out[i]);
+        }
+    }
+
+    public static byte[] encPos(Prefix prefix, byte[] hash, int pos) {
+        byte[] out = new byte[LEN];
+        encPos(prefix, hash, pos, out);
+        return out;
+    }
+
+    // in-place xor, acc ^= h
+    public static void xorInto(byte[] acc, byte[] h) {
+        for (int i = 0; i < LEN; ++i) {
+            acc[i] ^= h[i];
+        }
+    }
+
+    // fresh 256-bit node nonce drawn from the thread's generator
+    public static BigInteger nextNonce() {
+        Scratch s = SCRATCH.get();
+        s.random.nextBytes(s.rBytes);
+        return new BigInteger(1, s.rBytes);
+    }
+
+    public static void toFixedBytes(BigInteger r, byte[] dst, int off) {
+        byte[] raw = r.toByteArray();
+        int n = Math.min(raw.length, LEN);
+        int pad = LEN - n;
+        for (int i = 0; i < pad; ++i) dst[off + i] = 0;
+        System.arraycopy(raw, raw.length - n, dst, off + pad, n);
+    }
+
+    static void putLong(byte[] b, int off, long v) {
+        for (int i = 7; i >= 0; --i) {
+            b[off + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static void finish(MessageDigest md, byte[] out) {
+        try {
+            md.digest(out, 0, LEN);
+        } catch (java.security.DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
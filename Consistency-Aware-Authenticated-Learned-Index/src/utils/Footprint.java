@@ -0,0 +1,121 @@
+package utils;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+Heap footprint of index structures, by component.
+Sizes follow 64-bit HotSpot with compressed oops: 12 byte object header, 16 byte array header, 4 byte
+references, 8 byte alignment. Every object is counted once however many versions reach it, so one Footprint
+walked over a whole chain gives the chain's real cost. Sharing is tracked per node: versions share whole
+nodes, and a node's keys, pies and hashes are counted with it without being remembered one by one. Only
+what VOs hold is tracked per array, since a VO references pies and r values it does not own.
+ */
+public class Footprint {
+    public static final int KEYS = 0;
+    public static final int PIES = 1;
+    public static final int MODELS = 2;
+    public static final int CHD_RES = 3;
+    public static final int HASHES = 4;
+    public static final int NODES = 5;
+    public static final int VO_CACHES = 6;
+    public static final int MAPS = 7;
+    static final String[] NAMES = {"keys", "pies", "models", "chdRes", "hashes", "nodes", "vo caches", "maps"};
+
+    final long[] bytes = new long[NAMES.length];
+    final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    //true the first time o is reached
+    public boolean visit(Object o) {
+        return o != null && seen.add(o);
+    }
+
+    public boolean visited(Object o) {
+        return seen.contains(o);
+    }
+
+    public void add(int component, long size) {
+        bytes[component] += size;
+    }
+
+    public long get(int component) {
+        return bytes[component];
+    }
+
+    public long total() {
+        long sz = 0;
+        for (long b : bytes) sz += b;
+        return sz;
+    }
+
+    public static long object(int refs, int primitiveBytes) {
+        return align(12 + 4L * refs + primitiveBytes);
+    }
+
+    public static long array(long len, int elemBytes) {
+        return align(16 + len * elemBytes);
+    }
+
+    static long align(long sz) {
+        return (sz + 7) & ~7L;
+    }
+
+    //the add* methods below count arrays a node owns, the caller has just visited the node
+
+    public void addLongs(int component, long[] a) {
+        add(component, array(a.length, 8));
+    }
+
+    public void addBytes(int component, byte[] a) {
+        if (a != null) add(component, array(a.length, 1));
+    }
+
+    public void addBytes(int component, byte[][] a) {
+        add(component, array(a.length, 4));
+        for (byte[] b : a) addBytes(component, b);
+    }
+
+    //signum, mag and four cached ints
+    public void addBigInteger(int component, BigInteger b) {
+        if (b != null) add(component, object(1, 20) + array((b.bitLength() + 31) / 32, 4));
+    }
+
+    //a pie or r referenced from a VO, counted the first time any VO reaches it
+    public void addShared(int component, byte[] a) {
+        if (visit(a)) addBytes(component, a);
+    }
+
+    public void addShared(int component, BigInteger b) {
+        if (visit(b)) addBigInteger(component, b);
+    }
+
+    //ArrayList shell and its backing array, elements are counted by the caller
+    public void addList(int component, List<?> list) {
+        if (visit(list)) add(component, object(1, 8) + array(list.size(), 4));
+    }
+
+    //HashMap with boxed long keys: table, one node and one Long per entry, values sized by valueSize
+    public void addMap(Map<Long, ?> map, long valueSize) {
+        if (!visit(map)) return;
+        int capacity = 16;
+        while (capacity * 0.75 < map.size()) capacity <<= 1;
+        long sz = object(6, 16) + array(capacity, 4) + (long) map.size() * (object(3, 4) + object(0, 8));
+        for (Object v : map.values())
+            if (visit(v)) sz += valueSize;
+        add(MAPS, sz);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("%.2fmb (", total() / 1024.0 / 1024.0));
+        for (int i = 0; i < NAMES.length; ++i) {
+            if (i > 0) sb.append(", ");
+            sb.append(NAMES[i]).append(' ').append(String.format("%.2fmb", bytes[i] / 1024.0 / 1024.0));
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,187 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/*
+Binary key file: a 32 byte header (magic, count, min, max) followed by count little-endian longs.
+The file is memory-mapped, keys are read straight from the page cache without going through the heap.
+ */
+public class KeyFile implements AutoCloseable {
+    public static final long MAGIC = 0x3130594B4C5650L; // "PVLKY01"
+    public static final int HEADER = 32;
+    // keys per mapped region, keeps every region below the 2GB mapping limit
+    static final int REGION_KEYS = 1 << 27;
+
+    public final long count;
+    public final long min;
+    public final long max;
+
+    private final FileChannel channel;
+    private final LongBuffer[] regions;
+
+    private KeyFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER || header.getLong() != MAGIC)
+            throw new IOException("not a key file");
+        count = header.getLong();
+        min = header.getLong();
+        max = header.getLong();
+        long size = channel.size();
+        if (count < 0 || count > (size - HEADER) / 8)
+            throw new IOException("key file header says " + count + " keys, the file holds " + (size - HEADER) / 8);
+
+        int regionNum = (int) ((count + REGION_KEYS - 1) / REGION_KEYS);
+        regions = new LongBuffer[regionNum];
+        for (int i = 0; i < regionNum; ++i) {
+            long from = (long) i * REGION_KEYS;
+            long len = Math.min(REGION_KEYS, count - from);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + from * 8, len * 8);
+            regions[i] = mapped.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+    }
+
+    public static KeyFile open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            return new KeyFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    //the first len keys of the key file at path (all keys if len < 0), its min and max are the header's
+    public static long[] load(String path, int len) throws IOException {
+        try (KeyFile keyFile = open(path)) {
+            return keyFile.readKeys(len);
+        }
+    }
+
+    public long get(long i) {
+        return regions[(int) (i / REGION_KEYS)].get((int) (i % REGION_KEYS));
+    }
+
+    //copy keys [from, from + len) into dst[off, off + len)
+    public void read(long from, long[] dst, int off, int len) {
+        while (len > 0) {
+            int r = (int) (from / REGION_KEYS);
+            int pos = (int) (from % REGION_KEYS);
+            LongBuffer region = regions[r].duplicate();
+            int n = Math.min(len, region.limit() - pos);
+            region.position(pos);
+            region.get(dst, off, n);
+            from += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    //the first len keys (all keys if len < 0), more than fit in one array have to go through forEachChunk
+    public long[] readKeys(int len) {
+        long want = len < 0 ? count : Math.min(len, count);
+        if (want > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(want + " keys do not fit in one array, use forEachChunk");
+        int n = (int) want;
+        long[] keys = new long[n];
+        read(0, keys, 0, n);
+        return keys;
+    }
+
+    //stream the keys in chunks of at most chunkSize, the chunk array is reused between calls
+    public void forEachChunk(int chunkSize, Consumer<long[]> consumer) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        long[] chunk = new long[chunkSize];
+
+        for (long from = 0; from < count; from += chunkSize) {
+            int n = (int) Math.min(chunkSize, count - from);
+            if (n < chunkSize) chunk = new long[n];
+            read(from, chunk, 0, n);
+            consumer.accept(chunk);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    //convert a text dataset (one decimal key per line) into a key file, at most len keys (all if len < 0)
+    public static long convert(String textPath, String keyPath, long len) throws IOException {
+        long n = 0, low = Long.MAX_VALUE, high = Long.MIN_VALUE;
+        try (BufferedReader reader = new BufferedReader(new FileReader(textPath), 1 << 20);
+             RandomAccessFile file = new RandomAccessFile(keyPath, "rw");
+             FileChannel out = file.getChannel()) {
+            out.truncate(0);
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            out.position(HEADER);
+            String line;
+            while ((len < 0 || n < len) && (line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                long k = Long.parseLong(line.trim());
+                low = Math.min(low, k);
+                high = Math.max(high, k);
+                if (!buf.hasRemaining()) {
+                    buf.flip();
+                    while (buf.hasRemaining()) out.write(buf);
+                    buf.clear();
+                }
+                buf.putLong(k);
+                n++;
+            }
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putLong(n).putLong(low).putLong(high).flip();
+            out.write(header, 0);
+        }
+        return n;
+    }
+
+    //write keys into a key file
+    public static void write(String keyPath, long[] keys) throws IOException {
+        long low = Long.MAX_VALUE, high = Long.MIN_VALUE;
+        for (long k : keys) {
+            low = Math.min(low, k);
+            high = Math.max(high, k);
+        }
+        try (FileChannel out = FileChannel.open(Paths.get(keyPath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putLong(keys.length).putLong(low).putLong(high).flip();
+            while (header.hasRemaining()) out.write(header);
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < keys.length; ) {
+                buf.clear();
+                int n = Math.min(keys.length - i, buf.capacity() / 8);
+                buf.asLongBuffer().put(keys, i, n);
+                buf.limit(n * 8);
+                while (buf.hasRemaining()) out.write(buf);
+                i += n;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // KeyFile <text dataset> <key file> [len]
+        long len = args.length > 2 ? Long.parseLong(args[2]) : -1;
+        long s = System.nanoTime();
+        long n = convert(args[0], args[1], len);
+        System.out.println("converted " + n + " keys in " + (System.nanoTime() - s) / 1000000000.0 + "s");
+    }
+}
@@ -0,0 +1,95 @@
+package utils;
+
+/*
+Decides which versions a version chain keeps once they leave its ring of recent versions.
+Versions the policy drops are released, so only the path-copied nodes of kept versions stay on the heap.
+ */
+public interface RetentionPolicy {
+
+    //version was published at publishedAt (ms), latest is the newest version, now the current time (ms)
+    boolean keep(int version, long publishedAt, int latest, long now);
+
+    //true when keep stays true for this version whatever latest and now become, e.g. every k-th version
+    default boolean pins(int version, long publishedAt) {
+        return false;
+    }
+
+    //true when the versions it keeps without pinning them expire oldest first, so a prune can stop at the
+    //oldest one still kept; false (the default) has every prune ask keep for every checkpoint
+    default boolean expiresInOrder() {
+        return false;
+    }
+
+    static RetentionPolicy lastN(int n) {
+        return new RetentionPolicy() {
+            public boolean keep(int version, long publishedAt, int latest, long now) {
+                return latest - version < n;
+            }
+
+            public boolean expiresInOrder() {
+                return true;
+            }
+        };
+    }
+
+    static RetentionPolicy everyK(int k) {
+        return new RetentionPolicy() {
+            public boolean keep(int version, long publishedAt, int latest, long now) {
+                return version % k == 0;
+            }
+
+            public boolean pins(int version, long publishedAt) {
+                return version % k == 0;
+            }
+
+            public boolean expiresInOrder() {
+                return true;
+            }
+        };
+    }
+
+    // versions are published in order, so publishedAt grows with the version
+    static RetentionPolicy newerThan(long millis) {
+        return new RetentionPolicy() {
+            public boolean keep(int version, long publishedAt, int latest, long now) {
+                return now - publishedAt < millis;
+            }
+
+            public boolean expiresInOrder() {
+                return true;
+            }
+        };
+    }
+
+    // what neither side pins is kept while either keeps it, the union of two oldest first windows is one
+    default RetentionPolicy or(RetentionPolicy other) {
+        RetentionPolicy self = this;
+        return new RetentionPolicy() {
+            public boolean keep(int version, long publishedAt, int latest, long now) {
+                return self.keep(version, publishedAt, latest, now) || other.keep(version, publishedAt, latest, now);
+            }
+
+            public boolean pins(int version, long publishedAt) {
+                return self.pins(version, publishedAt) || other.pins(version, publishedAt);
+            }
+
+            public boolean expiresInOrder() {
+                return self.expiresInOrder() && other.expiresInOrder();
+            }
+        };
+    }
+
+    // a version pinned by one side still expires with the other side's window, so the order is not kept
+    default RetentionPolicy and(RetentionPolicy other) {
+        RetentionPolicy self = this;
+        return new RetentionPolicy() {
+            public boolean keep(int version, long publishedAt, int latest, long now) {
+                return self.keep(version, publishedAt, latest, now) && other.keep(version, publishedAt, latest, now);
+            }
+
+            public boolean pins(int version, long publishedAt) {
+                return self.pins(version, publishedAt) && other.pins(version, publishedAt);
+            }
+        };
+    }
+}
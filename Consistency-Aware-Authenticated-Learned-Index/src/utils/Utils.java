@@ -87,7 +87,7 @@ public class Utils {
 
 
     public static byte[] encPosHash(String sk, BigInteger r, byte[] hash, int pos) {
-        return SHA.bytesXor(hash, SHA.hashToBytes(sk + r + pos));
+        return DigestEngine.encPos(DigestEngine.prefix(sk).with(r), hash, pos);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,184 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Byte stream used by the VO codecs: unsigned LEB128 varints, zigzag signed varints and raw digests.
+The Reader takes bytes from an untrusted server: running past the end, an overlong varint or a count that
+cannot fit in the bytes left throws IllegalArgumentException instead of reading garbage or allocating for it.
+ */
+public class VOStream {
+    // VO trees are a few levels deep, a decoder nesting deeper than this rejects the bytes before the stack overflows
+    public static final int MAX_DEPTH = 64;
+
+    public static int checkDepth(int depth) {
+        if (depth > MAX_DEPTH)
+            throw new IllegalArgumentException("VO nested deeper than " + MAX_DEPTH);
+        return depth;
+    }
+
+    public static int varIntSize(long v) {
+        int n = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    public static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    public static int signedVarIntSize(long v) {
+        return varIntSize(zigZag(v));
+    }
+
+    //result keys: count, then zigzag deltas from the previous key
+    public static long keysSize(List<Long> keys) {
+        long sz = varIntSize(keys.size());
+        long prev = 0;
+        for (long k : keys) {
+            sz += signedVarIntSize(k - prev);
+            prev = k;
+        }
+        return sz;
+    }
+
+    public static class Writer {
+        byte[] buf;
+        int size;
+
+        public Writer() {
+            this(256);
+        }
+
+        public Writer(int capacity) {
+            buf = new byte[Math.max(capacity, 16)];
+        }
+
+        private void ensure(int n) {
+            if (size + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+        }
+
+        public void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        public void writeVarInt(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        public void writeSignedVarInt(long v) {
+            writeVarInt(zigZag(v));
+        }
+
+        public void writeBytes(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, size, b.length);
+            size += b.length;
+        }
+
+        public void writeKeys(List<Long> keys) {
+            writeVarInt(keys.size());
+            long prev = 0;
+            for (long k : keys) {
+                writeSignedVarInt(k - prev);
+                prev = k;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    public static class Reader {
+        final byte[] buf;
+        int pos;
+
+        public Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        public int readByte() {
+            if (pos >= buf.length)
+                throw new IllegalArgumentException("truncated VO at byte " + pos);
+            return buf[pos++] & 0xFF;
+        }
+
+        public long readVarInt() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) return v;
+            }
+            throw new IllegalArgumentException("varint longer than 10 bytes at byte " + pos);
+        }
+
+        //non negative int, anything wider is rejected rather than wrapped
+        public int readVarInt32() {
+            long v = readVarInt();
+            if (v < 0 || v > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("varint " + Long.toUnsignedString(v) + " out of int range at byte " + pos);
+            return (int) v;
+        }
+
+        //element count of what follows, every element takes at least one byte
+        public int readCount() {
+            return checkCount(readVarInt32());
+        }
+
+        public int checkCount(int n) {
+            if (n < 0 || n > remaining())
+                throw new IllegalArgumentException("count " + n + " exceeds the " + remaining() + " bytes left");
+            return n;
+        }
+
+        public long readSignedVarInt() {
+            long v = readVarInt();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        public byte[] readBytes(int n) {
+            if (n < 0 || n > remaining())
+                throw new IllegalArgumentException("truncated VO: " + n + " bytes wanted, " + remaining() + " left");
+            byte[] b = Arrays.copyOfRange(buf, pos, pos + n);
+            pos += n;
+            return b;
+        }
+
+        public List<Long> readKeys() {
+            int n = readCount();
+            List<Long> keys = new ArrayList<>(n);
+            long prev = 0;
+            for (int i = 0; i < n; ++i) {
+                prev += readSignedVarInt();
+                keys.add(prev);
+            }
+            return keys;
+        }
+
+        public boolean hasRemaining() {
+            return pos < buf.length;
+        }
+
+        public int remaining() {
+            return buf.length - pos;
+        }
+    }
+}
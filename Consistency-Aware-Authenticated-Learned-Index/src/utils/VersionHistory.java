@@ -0,0 +1,120 @@
+package utils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/*
+Checkpoints of a version chain: versions that left the ring and that the retention policy still keeps.
+Each checkpoint is the version's own tree, unchanged, so the root digest clients hold for it stays valid.
+Dropping the versions in between is what compacts the history: their path copies become garbage, and the
+nodes a checkpoint shares with its neighbours stay shared.
+ */
+public class VersionHistory<T> {
+    // one writer offers and prunes; every change swaps in a new Checkpoints, so a view() never changes afterwards
+    volatile RetentionPolicy policy;
+    volatile Checkpoints<T> trees = Checkpoints.empty();
+    NavigableMap<Integer, Long> publishedAt = new TreeMap<>();
+    // with a policy that expiresInOrder: the kept versions it does not pin, oldest first
+    ArrayDeque<Integer> expiring = new ArrayDeque<>();
+
+    public void setPolicy(RetentionPolicy policy, int latest) {
+        this.policy = policy;
+        expiring.clear();
+        if (policy != null && policy.expiresInOrder()) {
+            for (Map.Entry<Integer, Long> e : publishedAt.entrySet())
+                if (!policy.pins(e.getKey(), e.getValue()))
+                    expiring.add(e.getKey());
+        }
+        pruneAll(latest, trees);
+    }
+
+    public RetentionPolicy getPolicy() {
+        return policy;
+    }
+
+    //a version leaves the ring, keep it as a checkpoint if the policy wants it
+    public void offer(int version, long time, T tree, int latest) {
+        long now = System.currentTimeMillis();
+        RetentionPolicy policy = this.policy;
+        Checkpoints<T> next = trees;
+        if (tree != null && policy != null && policy.keep(version, time, latest, now)) {
+            next = next.with(version, tree);
+            publishedAt.put(version, time);
+            if (policy.expiresInOrder() && !policy.pins(version, time))
+                expiring.add(version);
+        }
+        if (policy != null && policy.expiresInOrder())
+            pruneOldest(latest, next);
+        else
+            pruneAll(latest, next);
+    }
+
+    public void prune(int latest) {
+        RetentionPolicy policy = this.policy;
+        if (policy != null && policy.expiresInOrder())
+            pruneOldest(latest, trees);
+        else
+            pruneAll(latest, trees);
+    }
+
+    // drops expiring versions from the oldest one until the first the policy still keeps, publishes next
+    private void pruneOldest(int latest, Checkpoints<T> next) {
+        long now = System.currentTimeMillis();
+        RetentionPolicy policy = this.policy;
+        int drops = 0;
+        for (Integer version : expiring) {
+            if (policy.keep(version, publishedAt.get(version), latest, now))
+                break;
+            drops++;
+        }
+        int[] drop = new int[drops];
+        for (int i = 0; i < drops; ++i) {
+            drop[i] = expiring.poll();
+            publishedAt.remove(drop[i]);
+        }
+        trees = next.without(drop);
+    }
+
+    // asks the policy about every checkpoint, for policies whose versions may expire in any order
+    private void pruneAll(int latest, Checkpoints<T> next) {
+        long now = System.currentTimeMillis();
+        RetentionPolicy policy = this.policy;
+        int[] drop = new int[publishedAt.size()];
+        int drops = 0;
+        for (Map.Entry<Integer, Long> e : publishedAt.entrySet())
+            if (policy == null || !policy.keep(e.getKey(), e.getValue(), latest, now))
+                drop[drops++] = e.getKey();
+        drop = Arrays.copyOf(drop, drops);
+        for (int version : drop)
+            publishedAt.remove(version);
+        expiring.removeIf(version -> !publishedAt.containsKey(version));
+        trees = next.without(drop);
+    }
+
+    //the checkpoints as of now, unaffected by later offers and prunes
+    public Checkpoints<T> view() {
+        return trees;
+    }
+
+    //the checkpoint of exactly this version, null when it was dropped
+    public T get(int version) {
+        return trees.get(version);
+    }
+
+    //newest kept version at or before version, null when there is none
+    public Integer floorVersion(int version) {
+        return trees.floorVersion(version);
+    }
+
+    public int size() {
+        return trees.size();
+    }
+
+    public Collection<T> values() {
+        return trees.values();
+    }
+}